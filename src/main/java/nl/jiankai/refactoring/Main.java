@@ -2,19 +2,17 @@ package nl.jiankai.refactoring;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.github.javaparser.Range;
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.BodyDeclaration;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
 import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
 import nl.jiankai.refactoring.configuration.CacheLocation;
 import nl.jiankai.refactoring.core.project.LocalFileProjectDiscovery;
 import nl.jiankai.refactoring.core.project.Project;
 import nl.jiankai.refactoring.core.project.ProjectDiscovery;
 import nl.jiankai.refactoring.core.project.dependencymanagement.ProjectCoordinate;
+import nl.jiankai.refactoring.core.project.extraction.DeclaredMethod;
+import nl.jiankai.refactoring.core.project.extraction.FileExtractionService;
 import nl.jiankai.refactoring.core.project.git.GitRepository;
 import nl.jiankai.refactoring.core.project.git.JGitRepositoryFactory;
+import nl.jiankai.refactoring.core.project.query.BytecodeProjectQuery;
 import nl.jiankai.refactoring.core.project.query.JGitProjectQuery;
 import nl.jiankai.refactoring.core.project.query.JavaParserProjectQuery;
 import nl.jiankai.refactoring.core.project.query.MethodUsages;
@@ -22,6 +20,9 @@ import nl.jiankai.refactoring.core.project.query.ProjectQuery;
 import nl.jiankai.refactoring.core.project.repository.Artifact;
 import nl.jiankai.refactoring.core.project.repository.ArtifactRepository;
 import nl.jiankai.refactoring.core.project.repository.maven.MavenCentralRepository;
+import nl.jiankai.refactoring.core.project.resolution.ResolutionBudget;
+import nl.jiankai.refactoring.core.project.resolution.ResolutionQuarantine;
+import nl.jiankai.refactoring.core.project.source.ProjectSources;
 import nl.jiankai.refactoring.core.refactoring.*;
 import nl.jiankai.refactoring.core.refactoring.javaparser.Dependency;
 import nl.jiankai.refactoring.core.refactoring.refactoringminer.RefactoringMinerRefactoringDetector;
@@ -29,6 +30,7 @@ import nl.jiankai.refactoring.core.storage.api.CacheService;
 import nl.jiankai.refactoring.core.storage.api.Identifiable;
 import nl.jiankai.refactoring.core.storage.filestorage.LocalFileStorageService;
 import nl.jiankai.refactoring.core.storage.filestorage.MultiFileCacheService;
+import nl.jiankai.refactoring.daemon.AnalysisDaemon;
 import nl.jiankai.refactoring.serialisation.JacksonSerializationService;
 import nl.jiankai.refactoring.serialisation.SerializationService;
 import nl.jiankai.refactoring.util.JavaParserUtil;
@@ -38,6 +40,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -63,6 +66,10 @@ public class Main {
          * 2.5: Write results to file
          * 3: Display results to console
          */
+        if (ApplicationConfiguration.daemon()) {
+            startDaemon();
+            return;
+        }
 
         long startTimeScript = System.currentTimeMillis();
         List<String> projectsToAnalyze = new ArrayList<>();
@@ -95,19 +102,7 @@ public class Main {
                                         Optional<ProjectRefactoring> projectRefactoring = projectRefactoringCacheService.get(projectRefactoringIdentifier);
                                         Set<String> allRefactoredMethods = projectRefactoring
                                                 .orElseGet(() -> {
-                                                    Set<String> methodDeclarations = findAllRefactoredMethods(parentProject, startCommitId, endCommitId)
-                                                            .stream()
-                                                            .map(m -> {
-                                                                try {
-                                                                    ResolvedMethodDeclaration resolvedMethodDeclaration = m.resolve();
-                                                                    return resolvedMethodDeclaration.getQualifiedSignature();
-                                                                } catch (Exception e) {
-                                                                    LOGGER.warn("Could not resolve method {}", m.getNameAsString(), e);
-                                                                    return "";
-                                                                }
-                                                            })
-                                                            .filter(Predicate.not(String::isEmpty))
-                                                            .collect(Collectors.toSet());
+                                                    Set<String> methodDeclarations = findAllRefactoredMethods(parentProject, startCommitId, endCommitId);
                                                     ProjectRefactoring refactoring = new ProjectRefactoring(parentArtifact.toString(), startCommitId, endCommitId, methodDeclarations);
                                                     projectRefactoringCacheService.write(refactoring);
                                                     return refactoring;
@@ -125,70 +120,113 @@ public class Main {
 
         LOGGER.info("Finished computing refactored methods for all projects");
 
-        for (Map.Entry<String, ProjectRefactoring> projectToAnalyze : projectRefactorings.entrySet()) {
-            long startTime = System.currentTimeMillis();
-            String projectCoordinate = projectToAnalyze.getKey();
-            String[] split = projectCoordinate.split(";");
-            String startCommitId = split[2];
-            Artifact.Coordinate parentArtifact = Artifact.Coordinate.read(split[1]);
-            LOGGER.info("Starting to analyze project {}", parentArtifact);
-            GitRepository parentProject = new JGitRepositoryFactory().createProject(split[0], new File(ApplicationConfiguration.applicationAllProjectsLocation() + File.separator + parentArtifact));
-
-            // refactoring between two commits
-            Set<String> allRefactoredMethods = projectToAnalyze.getValue().refactoredMethods();
-
-            //dependents
-            List<GitRepository> dependents = getDependentRepositories(parentArtifact, 35);
-            JGitProjectQuery gitProjectQuery = new JGitProjectQuery();
-            Dependency dependency = toDependency(parentArtifact);
-            Map<GitRepository, Optional<String>> projects = dependents
-                    .parallelStream()
-                    .collect(toMap(p -> p, project -> {
+        ProjectQuery projectQuery = ApplicationConfiguration.bytecodeUsageAnalysis() ? new BytecodeProjectQuery() : new JavaParserProjectQuery();
+        if (ApplicationConfiguration.multiLibraryAnalysis()) {
+            // all libraries are prepared first, so dependents shared by libraries are analysed once for all of them
+            List<LibraryAnalysis> libraryAnalyses = projectRefactorings.entrySet().stream().map(Main::prepareLibraryAnalysis).toList();
+            Map<Project, List<Project>> dependentsByLibrary = new LinkedHashMap<>();
+            libraryAnalyses.forEach(libraryAnalysis -> dependentsByLibrary.put(libraryAnalysis.parentProject(), List.copyOf(libraryAnalysis.dependents())));
+            long startTimeSharedAnalysis = System.currentTimeMillis();
+            Map<Project, List<MethodUsages>> usages = projectQuery.mostUsedMethods(dependentsByLibrary);
+            long sharedAnalysisDurationMs = System.currentTimeMillis() - startTimeSharedAnalysis;
+            LOGGER.info("It took {} minutes to analyze the dependents of {} projects together", sharedAnalysisDurationMs / 60000, libraryAnalyses.size());
+            libraryAnalyses.forEach(libraryAnalysis -> writePipelineResult(libraryAnalysis, usages.get(libraryAnalysis.parentProject()), libraryAnalysis.preparationDurationMs(), sharedAnalysisDurationMs, libraryAnalyses.size()));
+        } else {
+            for (Map.Entry<String, ProjectRefactoring> projectToAnalyze : projectRefactorings.entrySet()) {
+                LibraryAnalysis libraryAnalysis = prepareLibraryAnalysis(projectToAnalyze);
+                long startTimeAnalysis = System.currentTimeMillis();
+                List<MethodUsages> usages = projectQuery.mostUsedMethods(libraryAnalysis.parentProject(), libraryAnalysis.dependents());
+                long analysisDurationMs = libraryAnalysis.preparationDurationMs() + System.currentTimeMillis() - startTimeAnalysis;
+                writePipelineResult(libraryAnalysis, usages, analysisDurationMs, 0, 1);
+            }
+        }
+
+        long endTimeScript = System.currentTimeMillis();
+        LOGGER.info("Script finished in {} minutes", (endTimeScript - startTimeScript) / 60000);
+        LOGGER.info("Resolution budget: {}. {} files were skipped because they were quarantined", ResolutionBudget.statistics(), ResolutionQuarantine.getInstance().skippedFiles());
+        ResolutionQuarantine.getInstance().skippedThisRun().forEach((blobId, file) -> LOGGER.info("Skipped quarantined file '{}' ({})", file, blobId));
+        ResolutionQuarantine.getInstance().quarantinedThisRun().forEach(file -> LOGGER.info("Quarantined file '{}' ({}) after exceeding {} ms {} times", file.file(), file.blobId(), file.budgetMs(), file.overruns()));
+    }
+
+    private static void startDaemon() {
+        ProjectQuery projectQuery = ApplicationConfiguration.bytecodeUsageAnalysis() ? new BytecodeProjectQuery() : new JavaParserProjectQuery();
+        AnalysisDaemon analysisDaemon = new AnalysisDaemon(projectQuery);
+        try {
+            analysisDaemon.start();
+        } catch (IOException e) {
+            LOGGER.error("Could not start the analysis daemon on port {}", ApplicationConfiguration.daemonPort(), e);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(analysisDaemon::stop));
+    }
+
+    /**
+     * Fetches the dependents of a library and checks them out at their latest version depending on the library, and
+     * checks the library out at the start of the analysed commits
+     */
+    private static LibraryAnalysis prepareLibraryAnalysis(Map.Entry<String, ProjectRefactoring> projectToAnalyze) {
+        long startTime = System.currentTimeMillis();
+        String projectCoordinate = projectToAnalyze.getKey();
+        String[] split = projectCoordinate.split(";");
+        String startCommitId = split[2];
+        Artifact.Coordinate parentArtifact = Artifact.Coordinate.read(split[1]);
+        LOGGER.info("Starting to analyze project {}", parentArtifact);
+        GitRepository parentProject = new JGitRepositoryFactory().createProject(split[0], new File(ApplicationConfiguration.applicationAllProjectsLocation() + File.separator + parentArtifact));
+
+        //dependents
+        List<GitRepository> dependents = getDependentRepositories(parentArtifact, 35);
+        JGitProjectQuery gitProjectQuery = new JGitProjectQuery();
+        Dependency dependency = toDependency(parentArtifact);
+        Map<GitRepository, Optional<String>> projects = dependents
+                .parallelStream()
+                .collect(toMap(p -> p, project -> {
+                    try {
+                        return gitProjectQuery.findLatestVersionWithDependency(project, dependency);
+                    } catch (Exception e) {
+                        return Optional.empty();
+                    }
+                }));
+
+        dependents = projects.entrySet()
+                .stream()
+                .filter(entry -> {
+                    Optional<String> commit = entry.getValue();
+                    GitRepository repo = entry.getKey();
+                    if (commit.isPresent()) {
                         try {
-                            return gitProjectQuery.findLatestVersionWithDependency(project, dependency);
+                            repo.checkout(commit.get());
                         } catch (Exception e) {
-                            return Optional.empty();
-                        }
-                    }));
-
-            dependents = projects.entrySet()
-                    .stream()
-                    .filter(entry -> {
-                        Optional<String> commit = entry.getValue();
-                        GitRepository repo = entry.getKey();
-                        if (commit.isPresent()) {
-                            try {
-                                repo.checkout(commit.get());
-                            } catch (Exception e) {
-                                removeProject(repo.getLocalPath());
-                                return false;
-                            }
-                            return true;
-                        } else {
                             removeProject(repo.getLocalPath());
                             return false;
                         }
-                    })
-                    .map(Map.Entry::getKey)
-                    .toList();
-
-
-            //get most used methods
-            ProjectQuery projectQuery = new JavaParserProjectQuery();
-            parentProject.checkout(startCommitId);
-            List<MethodUsages> usages = projectQuery.mostUsedMethods(parentProject, dependents);
-            Set<String> usedMethodsRefactored = usages.stream().filter(method -> method.usages() > 0 && allRefactoredMethods.contains(method.fullyQualifiedSignature())).map(MethodUsages::fullyQualifiedSignature).collect(Collectors.toSet());
-            long endTime = System.currentTimeMillis();
-            LocalFileStorageService pipelineResultStorage = new LocalFileStorageService(CacheLocation.PIPELINE_RESULTS + File.separator + parentArtifact + "-" + System.currentTimeMillis(), true);
-            SerializationService serializationService = new JacksonSerializationService();
-            long analysisDurationMs = endTime - startTime;
-            pipelineResultStorage.write(new String(serializationService.serialize(new PipelineResult(usages, usedMethodsRefactored, dependents.size(), analysisDurationMs))));
-            LOGGER.info("Finished analyzing project {}", parentArtifact);
-            LOGGER.info("It took {} minutes to analyze the project", analysisDurationMs / 60000);
-        }
+                        return true;
+                    } else {
+                        removeProject(repo.getLocalPath());
+                        return false;
+                    }
+                })
+                .map(Map.Entry::getKey)
+                .toList();
 
-        long endTimeScript = System.currentTimeMillis();
-        LOGGER.info("Script finished in {} minutes", (endTimeScript - startTimeScript) / 60000);
+        parentProject.checkout(startCommitId);
+        // refactoring between two commits
+        return new LibraryAnalysis(parentArtifact, parentProject, projectToAnalyze.getValue().refactoredMethods(), dependents, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * @param analysisDurationMs       the time spent on this project alone
+     * @param sharedAnalysisDurationMs the time spent on analysing the dependents of several projects at once, 0 when the
+     *                                 dependents of this project were analysed on their own
+     * @param librariesSharingAnalysis the number of projects whose dependents were analysed together with this project
+     */
+    private static void writePipelineResult(LibraryAnalysis libraryAnalysis, List<MethodUsages> usages, long analysisDurationMs, long sharedAnalysisDurationMs, int librariesSharingAnalysis) {
+        Set<String> allRefactoredMethods = libraryAnalysis.refactoredMethods();
+        Set<String> usedMethodsRefactored = usages.stream().filter(method -> method.usages() > 0 && allRefactoredMethods.contains(method.fullyQualifiedSignature())).map(MethodUsages::fullyQualifiedSignature).collect(Collectors.toSet());
+        LocalFileStorageService pipelineResultStorage = new LocalFileStorageService(CacheLocation.PIPELINE_RESULTS + File.separator + libraryAnalysis.parentArtifact() + "-" + System.currentTimeMillis(), true);
+        SerializationService serializationService = new JacksonSerializationService();
+        pipelineResultStorage.write(new String(serializationService.serialize(new PipelineResult(usages, usedMethodsRefactored, libraryAnalysis.dependents().size(), analysisDurationMs, sharedAnalysisDurationMs, librariesSharingAnalysis))));
+        LOGGER.info("Finished analyzing project {}", libraryAnalysis.parentArtifact());
+        LOGGER.info("It took {} minutes to analyze the project", analysisDurationMs / 60000);
     }
 
     private static String createProjectRefactoringIdentifier(String projectId, String startCommitId, String endCommitId) {
@@ -196,7 +234,12 @@ public class Main {
     }
 
     private record PipelineResult(List<MethodUsages> methodUsages, Set<String> refactoredMethodsUsedByDependents,
-                                  int projectsAnalyzed, long analysisDurationMs) {
+                                  int projectsAnalyzed, long analysisDurationMs, long sharedAnalysisDurationMs,
+                                  int librariesSharingAnalysis) {
+    }
+
+    private record LibraryAnalysis(Artifact.Coordinate parentArtifact, GitRepository parentProject,
+                                   Set<String> refactoredMethods, List<GitRepository> dependents, long preparationDurationMs) {
     }
 
     @JsonIgnoreProperties({"id"})
@@ -217,32 +260,38 @@ public class Main {
         return new Artifact.Coordinate(projectCoordinate.groupId(), projectCoordinate.artifactId(), projectCoordinate.version());
     }
 
-    private static List<MethodDeclaration> findAllRefactoredMethods(GitRepository gitRepository, String startCommitId, String endCommitId) {
+    private static Set<String> findAllRefactoredMethods(GitRepository gitRepository, String startCommitId, String endCommitId) {
         LOGGER.info("Finding all refactored methods");
         RefactoringDetector refactoringDetector = new RefactoringMinerRefactoringDetector();
         Collection<Refactoring> refactorings = refactoringDetector.detectRefactoringBetweenCommit(gitRepository, startCommitId, endCommitId, Set.of(RefactoringType.METHOD_NAME, RefactoringType.METHOD_SIGNATURE));
         Map<String, List<Refactoring>> refactoringsByCommitMap = refactorings.stream().collect(Collectors.groupingBy(Refactoring::commitId));
-        List<CompilationUnit> refactoredClasses = getRefactoredClasses(gitRepository, refactoringsByCommitMap);
         Set<String> fullyQualifiedPathsOfRefactoredElements = refactorings.stream().map(Refactoring::packagePath).collect(Collectors.toSet());
 
-        List<ClassOrInterfaceDeclaration> classes = refactoredClasses
+        List<DeclaredMethod> methodsOfRefactoredClasses = getMethodsOfRefactoredClasses(gitRepository, refactoringsByCommitMap)
                 .stream()
-                .flatMap(c -> c.getTypes().stream().filter(ClassOrInterfaceDeclaration.class::isInstance).map(ClassOrInterfaceDeclaration.class::cast))
-                .filter(c -> fullyQualifiedPathsOfRefactoredElements.contains(c.getFullyQualifiedName().orElse("")))
+                .filter(method -> method.topLevelType() && fullyQualifiedPathsOfRefactoredElements.contains(method.declaringType()))
                 .toList();
 
-        return getRefactoredMethods(refactorings, classes);
+        return getRefactoredMethods(refactorings, methodsOfRefactoredClasses);
     }
 
-    private static List<CompilationUnit> getRefactoredClasses(GitRepository gitRepository, Map<String, List<Refactoring>> refactoringsByCommitMap) {
+    private static List<DeclaredMethod> getMethodsOfRefactoredClasses(GitRepository gitRepository, Map<String, List<Refactoring>> refactoringsByCommitMap) {
         LOGGER.info("Computing refactored classes");
+        FileExtractionService fileExtractionService = new FileExtractionService();
         return refactoringsByCommitMap
                 .entrySet()
                 .stream()
                 .flatMap(entry -> {
                     try {
                         gitRepository.checkout(entry.getKey());
-                        return JavaParserUtil.getClasses(gitRepository, entry.getValue().stream().map(Refactoring::filePath).toList()).stream();
+                        List<String> relativePaths = entry.getValue().stream().map(Refactoring::filePath).toList();
+                        ProjectSources projectSources = JavaParserUtil.getProjectSources(gitRepository);
+                        List<Path> refactoredFiles = projectSources
+                                .javaFiles()
+                                .stream()
+                                .filter(file -> relativePaths.stream().anyMatch(file.toString()::endsWith))
+                                .toList();
+                        return fileExtractionService.declaredMethods(projectSources, refactoredFiles).stream();
                     } catch (Exception e) {
                         LOGGER.error("Could not checkout commit {}", entry.getKey(), e);
                         return Stream.empty();
@@ -251,25 +300,19 @@ public class Main {
                 .toList();
     }
 
-    private static List<MethodDeclaration> getRefactoredMethods(Collection<Refactoring> refactorings, List<ClassOrInterfaceDeclaration> refactoredClasses) {
+    private static Set<String> getRefactoredMethods(Collection<Refactoring> refactorings, List<DeclaredMethod> methodsOfRefactoredClasses) {
         LOGGER.info("Computing refactored methods");
-        return refactoredClasses
+        return methodsOfRefactoredClasses
                 .stream()
-                .flatMap(c ->
-                        c
-                                .getMembers()
-                                .stream()
-                                .filter(BodyDeclaration::isMethodDeclaration)
-                                .map(MethodDeclaration.class::cast))
                 .filter(method -> {
-                    Range methodRange = method.getRange().orElse(null);
-
-                    if (methodRange == null) {
+                    if (method.position() == null || method.qualifiedSignature() == null) {
                         return false;
                     }
+                    Range methodRange = Range.range(method.position().rowStart(), method.position().columnStart(), method.position().rowEnd(), method.position().columnEnd());
                     return refactorings.stream().anyMatch(r -> Range.range(r.position().rowStart(), r.position().columnStart(), r.position().rowEnd(), r.position().columnEnd()).contains(methodRange));
                 })
-                .toList();
+                .map(DeclaredMethod::qualifiedSignature)
+                .collect(Collectors.toSet());
     }
 
     private static File createProjectLocation(Artifact.Coordinate coordinate) {
@@ -18,4 +18,200 @@ public class ApplicationConfiguration {
     public static String cacheDirectory() {
         return applicationAssetsBaseDirectory + "/cache";
     }
+
+    /**
+     * @return the maximum number of entities every file cache keeps in memory besides on disk
+     */
+    public static int cacheMemorySize() {
+        return Integer.getInteger("cache.memory.size", 1_000);
+    }
+
+    /**
+     * @return the maximum number of jar type solvers that are kept in memory and shared between projects
+     */
+    public static int typeSolverPoolSize() {
+        return Integer.getInteger("typesolver.pool.size", 512);
+    }
+
+    /**
+     * @return whether JDK types are solved from an index of the jrt file system instead of through reflection
+     */
+    public static boolean indexedJdkTypeSolver() {
+        return !"reflection".equalsIgnoreCase(System.getProperty("typesolver.jdk", "indexed"));
+    }
+
+    /**
+     * @return the number of threads used to parse the source files of a project, 1 parses sequentially
+     */
+    public static int parserThreads() {
+        return Integer.getInteger("parser.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return the number of dependents whose method calls are computed at the same time, 1 analyses them one by one
+     */
+    public static int dependentThreads() {
+        return Integer.getInteger("dependents.threads", 1);
+    }
+
+    /**
+     * @return the number of projects whose refactoring impact is assessed at the same time, 1 assesses them one by one
+     * while the files of each project are still parsed by {@link #parserThreads()} threads
+     */
+    public static int impactProjectThreads() {
+        return Integer.getInteger("impact.projects.in-flight", 1);
+    }
+
+    /**
+     * @return the number of shards the commits of a repository are divided over to detect their refactorings at the
+     * same time, 1 detects them one commit after another
+     */
+    public static int refactoringDetectionShards() {
+        return Integer.getInteger("refactoring-detection.shards", 1);
+    }
+
+    /**
+     * @return whether the parser skips comment attribution and token storage, which this application does not need
+     */
+    public static boolean lowMemoryParser() {
+        return Boolean.parseBoolean(System.getProperty("parser.low-memory", "true"));
+    }
+
+    /**
+     * @return the maximum number of parsed files, directories and types every source directory type solver caches
+     */
+    public static int sourceTypeSolverCacheSize() {
+        return Integer.getInteger("parser.source-cache.size", 256);
+    }
+
+    /**
+     * @return whether the public methods of a library are read from its compiled classes instead of its sources
+     */
+    public static boolean bytecodePublicApi() {
+        return "bytecode".equalsIgnoreCase(System.getProperty("public-api.extraction", "source"));
+    }
+
+    /**
+     * @return whether the calls of dependents are counted in their compiled classes instead of their sources
+     */
+    public static boolean bytecodeUsageAnalysis() {
+        return "bytecode".equalsIgnoreCase(System.getProperty("usage.analysis", "source"));
+    }
+
+    /**
+     * @return whether all libraries are analysed together, so a dependent of several libraries is parsed and resolved
+     * once for all of them, instead of one library after another
+     */
+    public static boolean multiLibraryAnalysis() {
+        return Boolean.getBoolean("analysis.multi-library");
+    }
+
+    /**
+     * @return whether the calls of dependents to a library are resolved against a snapshot of the analysed library
+     * commit, for the dependents that declare the version of the library at that commit
+     */
+    public static boolean librarySnapshot() {
+        return Boolean.parseBoolean(System.getProperty("library.snapshot.enabled", "true"));
+    }
+
+    /**
+     * @return whether refactoring impact is looked up in an index of the call sites of every project instead of
+     * parsing all projects for every assessed refactoring
+     */
+    public static boolean callSiteIndex() {
+        return Boolean.parseBoolean(System.getProperty("callsite.index.enabled", "true"));
+    }
+
+    /**
+     * @return the maximum number of resolved method call shapes that are remembered per project
+     */
+    public static int resolutionMemoSize() {
+        return Integer.getInteger("resolution.memo.size", 50_000);
+    }
+
+    /**
+     * @return whether calls whose method follows from the imports, declared types and number of arguments are decided
+     * without the symbol solver
+     */
+    public static boolean tieredResolution() {
+        return Boolean.parseBoolean(System.getProperty("resolution.tiered.enabled", "true"));
+    }
+
+    /**
+     * @return the fraction of the calls decided without the symbol solver that is checked against the symbol solver, 1%
+     * by default so disagreements of the first tier show up in every run
+     */
+    public static double tieredResolutionAuditRate() {
+        return Double.parseDouble(System.getProperty("resolution.tiered.audit-rate", "0.01"));
+    }
+
+    /**
+     * @return whether source files that can not call any of the analysed methods are skipped before they are parsed
+     */
+    public static boolean sourcePrefilter() {
+        return Boolean.parseBoolean(System.getProperty("prefilter.enabled", "true"));
+    }
+
+    /**
+     * @return whether the source prefilter also requires a file to mention the package of the analysed library
+     */
+    public static boolean prefilterRequiresPackage() {
+        return Boolean.getBoolean("prefilter.require-package");
+    }
+
+    /**
+     * @return the maximum time in milliseconds the symbol solver may spend on a single file, 0 for no limit
+     */
+    public static long resolutionFileBudgetMs() {
+        return Long.getLong("resolution.budget.file-ms", 120_000);
+    }
+
+    /**
+     * @return the maximum time in milliseconds the symbol solver may spend on a single call, 0 for no limit
+     */
+    public static long resolutionCallBudgetMs() {
+        return Long.getLong("resolution.budget.call-ms", 10_000);
+    }
+
+    /**
+     * @return whether files that exceeded their resolution budget are skipped by later runs
+     */
+    public static boolean resolutionQuarantine() {
+        return Boolean.parseBoolean(System.getProperty("resolution.quarantine.enabled", "true"));
+    }
+
+    /**
+     * @return the number of times a file has to exceed its resolution budget before later runs skip it
+     */
+    public static int resolutionQuarantineOverruns() {
+        return Integer.getInteger("resolution.quarantine.overruns", 2);
+    }
+
+    /**
+     * @return the number of days after its last overrun that a quarantined file is tried again
+     */
+    public static long resolutionQuarantineExpiryDays() {
+        return Long.getLong("resolution.quarantine.expiry-days", 30);
+    }
+
+    /**
+     * @return whether {@code Main} starts the analysis daemon instead of running the analysis once
+     */
+    public static boolean daemon() {
+        return Boolean.getBoolean("daemon");
+    }
+
+    /**
+     * @return the loopback port the analysis daemon answers queries on
+     */
+    public static int daemonPort() {
+        return Integer.getInteger("daemon.port", 8123);
+    }
+
+    /**
+     * @return the number of queries the analysis daemon answers at the same time
+     */
+    public static int daemonThreads() {
+        return Integer.getInteger("daemon.threads", 4);
+    }
 }
@@ -6,9 +6,15 @@ public class CacheLocation {
     private static final String cacheBaseLocation = ApplicationConfiguration.cacheDirectory() + File.separator;
     public static final String REFACTORING_IMPACT = cacheBaseLocation + "refactoring-impact";
     public static final String PUBLIC_METHODS = cacheBaseLocation + "public-methods";
-    public static final String METHOD_CALLS = cacheBaseLocation + "method-calls";
     public static final String ARTIFACTS = cacheBaseLocation + "artifacts";
     public static final String PROJECT_REFACTORINGS = cacheBaseLocation + "refactoring";
     public static final String DEPENDENTS = cacheBaseLocation + "dependents";
     public static final String PIPELINE_RESULTS = cacheBaseLocation + "results";
+    public static final String FILE_METHOD_CALLS = cacheBaseLocation + "file-method-calls";
+    public static final String FILE_DECLARATIONS = cacheBaseLocation + "file-declarations";
+    public static final String RESOLUTION_QUARANTINE = cacheBaseLocation + "resolution-quarantine";
+    public static final String JDK_INDEX = cacheBaseLocation + "jdk-index";
+    public static final String LIBRARY_SNAPSHOTS = cacheBaseLocation + "library-snapshots";
+    public static final String USAGE_MATRICES = cacheBaseLocation + "usage-matrices";
+    public static final String CALL_SITE_INDEX = cacheBaseLocation + "call-site-index";
 }
@@ -1,6 +1,7 @@
 package nl.jiankai.refactoring.core.project;
 
 import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
+import nl.jiankai.refactoring.core.project.source.SourceRootIndexCache;
 import nl.jiankai.refactoring.tasks.ScheduledTask;
 import nl.jiankai.refactoring.tasks.ScheduledTaskExecutorService;
 import org.slf4j.Logger;
@@ -20,6 +21,7 @@ public final class ProjectManager implements ProjectObservable<Project> {
     private List<ProjectListener<Project>> listeners = new ArrayList<>();
 
     public ProjectManager() {
+        addListener(SourceRootIndexCache.getInstance());
         discoverProjects();
         submitProjectDiscoverTask();
     }
@@ -0,0 +1,11 @@
+package nl.jiankai.refactoring.core.project.bytecode;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @param classes     the classes declared in a jar or directory of class files
+ * @param invocations the number of invoke instructions per invoked method in the code of the classes
+ */
+public record ClassFileContents(List<LibraryClass> classes, Map<MethodInvocation, Long> invocations) {
+}
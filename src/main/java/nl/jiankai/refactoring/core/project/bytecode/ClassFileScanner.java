@@ -0,0 +1,247 @@
+package nl.jiankai.refactoring.core.project.bytecode;
+
+import javassist.bytecode.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Reads the declared classes and methods from the class files of a jar or a directory of compiled classes, such as
+ * {@code target/classes}, without loading any of the classes.
+ */
+public final class ClassFileScanner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassFileScanner.class);
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
+    private ClassFileScanner() {
+    }
+
+    /**
+     * @param location a jar or a directory containing class files
+     * @return the classes declared in the location
+     * @throws IOException when the location could not be read
+     */
+    public static List<LibraryClass> scan(Path location) throws IOException {
+        return toLibraryClasses(read(location));
+    }
+
+    /**
+     * Reads the declared classes together with the number of times every method is invoked by their code. Invocations
+     * of constructors and through {@code invokedynamic} are not counted.
+     *
+     * @param location       a jar or a directory containing class files
+     * @param countedClasses decides by internal name of which classes the invocations are counted
+     * @return the classes declared in the location and the methods they invoke
+     * @throws IOException when the location could not be read
+     */
+    public static ClassFileContents scanWithInvocations(Path location, Predicate<String> countedClasses) throws IOException {
+        List<ClassFile> classFiles = read(location);
+        Map<MethodInvocation, Long> invocations = new HashMap<>();
+        classFiles
+                .stream()
+                .filter(classFile -> countedClasses.test(internalName(classFile.getName())))
+                .forEach(classFile -> countInvocations(classFile, invocations));
+
+        return new ClassFileContents(toLibraryClasses(classFiles), invocations);
+    }
+
+    private static List<ClassFile> read(Path location) throws IOException {
+        List<ClassFile> classFiles = new ArrayList<>();
+
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> files = Files.walk(location)) {
+                for (Path file : files.filter(ClassFileScanner::isClassFile).toList()) {
+                    try (InputStream inputStream = Files.newInputStream(file)) {
+                        read(inputStream, file.toString()).ifPresent(classFiles::add);
+                    }
+                }
+            }
+        } else {
+            try (JarFile jarFile = new JarFile(location.toFile())) {
+                Iterator<JarEntry> entries = jarFile.entries().asIterator();
+                while (entries.hasNext()) {
+                    JarEntry entry = entries.next();
+                    // the classes of other java versions in a multi release jar
+                    if (!entry.isDirectory() && !entry.getName().startsWith("META-INF/") && isClassFile(Path.of(entry.getName()))) {
+                        try (InputStream inputStream = jarFile.getInputStream(entry)) {
+                            read(inputStream, location + "!" + entry.getName()).ifPresent(classFiles::add);
+                        }
+                    }
+                }
+            }
+        }
+
+        return classFiles;
+    }
+
+    private static void countInvocations(ClassFile classFile, Map<MethodInvocation, Long> invocations) {
+        ConstPool constPool = classFile.getConstPool();
+        for (MethodInfo methodInfo : classFile.getMethods()) {
+            CodeAttribute code = methodInfo.getCodeAttribute();
+            if (code == null) {
+                continue;
+            }
+
+            CodeIterator iterator = code.iterator();
+            try {
+                while (iterator.hasNext()) {
+                    int index = iterator.next();
+                    int opcode = iterator.byteAt(index);
+                    if (opcode == Opcode.INVOKEVIRTUAL || opcode == Opcode.INVOKESPECIAL || opcode == Opcode.INVOKESTATIC || opcode == Opcode.INVOKEINTERFACE) {
+                        toInvocation(constPool, iterator.u16bitAt(index + 1))
+                                .ifPresent(invocation -> invocations.merge(invocation, 1L, Long::sum));
+                    }
+                }
+            } catch (BadBytecode e) {
+                LOGGER.warn("Could not read the code of method '{}' of class '{}'", methodInfo.getName(), classFile.getName(), e);
+            }
+        }
+    }
+
+    private static Optional<MethodInvocation> toInvocation(ConstPool constPool, int index) {
+        String owner;
+        String name;
+        String descriptor;
+        if (constPool.getTag(index) == ConstPool.CONST_InterfaceMethodref) {
+            owner = constPool.getInterfaceMethodrefClassName(index);
+            name = constPool.getInterfaceMethodrefName(index);
+            descriptor = constPool.getInterfaceMethodrefType(index);
+        } else {
+            owner = constPool.getMethodrefClassName(index);
+            name = constPool.getMethodrefName(index);
+            descriptor = constPool.getMethodrefType(index);
+        }
+
+        // methods invoked on arrays, such as clone(), are owned by an array type
+        if (owner == null || name.startsWith("<") || owner.startsWith("[")) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new MethodInvocation(internalName(owner), name, descriptor));
+    }
+
+    private static boolean isClassFile(Path file) {
+        String fileName = file.getFileName() == null ? "" : file.getFileName().toString();
+        return fileName.endsWith(CLASS_FILE_EXTENSION) && !fileName.equals("module-info.class") && !fileName.equals("package-info.class");
+    }
+
+    private static Optional<ClassFile> read(InputStream inputStream, String origin) {
+        try {
+            return Optional.of(new ClassFile(new DataInputStream(new BufferedInputStream(inputStream))));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not read class file '{}'", origin, e);
+            return Optional.empty();
+        }
+    }
+
+    private static List<LibraryClass> toLibraryClasses(List<ClassFile> classFiles) {
+        Map<String, Membership> memberships = new HashMap<>();
+        for (ClassFile classFile : classFiles) {
+            membership(classFile).ifPresent(membership -> memberships.put(internalName(classFile.getName()), membership));
+        }
+
+        Map<String, String> qualifiedNames = new HashMap<>();
+        return classFiles
+                .stream()
+                .map(classFile -> toLibraryClass(classFile, memberships, qualifiedNames))
+                .toList();
+    }
+
+    private static LibraryClass toLibraryClass(ClassFile classFile, Map<String, Membership> memberships, Map<String, String> qualifiedNames) {
+        String internalName = internalName(classFile.getName());
+        Membership membership = memberships.getOrDefault(internalName, Membership.TOP_LEVEL);
+        List<LibraryMethod> methods = classFile
+                .getMethods()
+                .stream()
+                .map(ClassFileScanner::toLibraryMethod)
+                .flatMap(Optional::stream)
+                .toList();
+
+        return new LibraryClass(
+                internalName,
+                qualifiedName(internalName, memberships, qualifiedNames),
+                classFile.getSuperclass() == null || internalName.equals("java/lang/Object") ? null : internalName(classFile.getSuperclass()),
+                Arrays.stream(classFile.getInterfaces()).map(ClassFileScanner::internalName).toList(),
+                membership.outerName() == null ? classFile.getAccessFlags() : membership.accessFlags() | (classFile.getAccessFlags() & AccessFlag.ENUM),
+                membership.outerName(),
+                !membership.isAccessibleByName(),
+                methods);
+    }
+
+    private static Optional<LibraryMethod> toLibraryMethod(MethodInfo methodInfo) {
+        SignatureAttribute signatureAttribute = (SignatureAttribute) methodInfo.getAttribute(SignatureAttribute.tag);
+        boolean varargs = (methodInfo.getAccessFlags() & AccessFlag.VARARGS) != 0;
+        List<String> parameterTypes;
+        try {
+            parameterTypes = TypeSignatures.parameterTypes(signatureAttribute == null ? methodInfo.getDescriptor() : signatureAttribute.getSignature(), varargs);
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Could not read the generic signature of method '{}', falling back to its descriptor", methodInfo.getName(), e);
+            try {
+                parameterTypes = TypeSignatures.parameterTypes(methodInfo.getDescriptor(), varargs);
+            } catch (IllegalArgumentException invalidDescriptor) {
+                LOGGER.warn("Could not read the descriptor of method '{}'", methodInfo.getName(), invalidDescriptor);
+                return Optional.empty();
+            }
+        }
+
+        return Optional.of(new LibraryMethod(methodInfo.getName(), methodInfo.getDescriptor(), methodInfo.getAccessFlags(), parameterTypes));
+    }
+
+    /**
+     * The inner classes attribute of a class also describes the class itself when it is nested in another class
+     */
+    private static Optional<Membership> membership(ClassFile classFile) {
+        InnerClassesAttribute innerClasses = (InnerClassesAttribute) classFile.getAttribute(InnerClassesAttribute.tag);
+        if (innerClasses == null) {
+            return Optional.empty();
+        }
+
+        for (int i = 0; i < innerClasses.tableLength(); i++) {
+            if (classFile.getName().equals(innerClasses.innerClass(i))) {
+                String outerClass = innerClasses.outerClass(i);
+                String innerName = innerClasses.innerName(i);
+                return Optional.of(new Membership(outerClass == null ? null : internalName(outerClass), innerName, innerClasses.accessFlags(i), outerClass != null && innerName != null));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private static String qualifiedName(String internalName, Map<String, Membership> memberships, Map<String, String> qualifiedNames) {
+        String qualifiedName = qualifiedNames.get(internalName);
+        if (qualifiedName != null) {
+            return qualifiedName;
+        }
+
+        Membership membership = memberships.get(internalName);
+        if (membership == null || membership.outerName() == null) {
+            qualifiedName = internalName.replace('/', '.');
+        } else if (memberships.containsKey(membership.outerName()) || !membership.outerName().contains("$")) {
+            qualifiedName = qualifiedName(membership.outerName(), memberships, qualifiedNames) + "." + membership.innerName();
+        } else {
+            qualifiedName = TypeSignatures.qualifiedName(internalName);
+        }
+
+        qualifiedNames.put(internalName, qualifiedName);
+        return qualifiedName;
+    }
+
+    private static String internalName(String className) {
+        return className.replace('.', '/');
+    }
+
+    private record Membership(String outerName, String innerName, int accessFlags, boolean isAccessibleByName) {
+        static final Membership TOP_LEVEL = new Membership(null, null, 0, true);
+    }
+}
@@ -0,0 +1,105 @@
+package nl.jiankai.refactoring.core.project.bytecode;
+
+import nl.jiankai.refactoring.core.project.Project;
+import nl.jiankai.refactoring.core.project.dependencymanagement.ProjectCoordinate;
+import nl.jiankai.refactoring.core.project.source.SourceRoot;
+import nl.jiankai.refactoring.core.project.source.SourceRootIndexCache;
+import nl.jiankai.refactoring.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Locates the compiled classes of a project, either in the build output of its checkout or as a published jar
+ */
+public final class CompiledClasses {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompiledClasses.class);
+
+    private CompiledClasses() {
+    }
+
+    /**
+     * The {@code target/classes} directories are only used when none of the sources of their module have been changed
+     * after the last compilation. A partially compiled project would silently miss the classes of the other modules,
+     * so the build output is only used when every module with main sources is compiled.
+     *
+     * @param project the checked out project
+     * @return the up-to-date class directories of the modules of the project, empty when any module is not up to date
+     */
+    public static List<Path> buildOutput(Project project) {
+        List<SourceRoot> mainSourceRoots = SourceRootIndexCache
+                .getInstance()
+                .get(project.getLocalPath())
+                .sourceRoots()
+                .stream()
+                .filter(sourceRoot -> sourceRoot.kind() == SourceRoot.Kind.MAIN)
+                .filter(sourceRoot -> !sourceRoot.javaFiles().isEmpty())
+                .toList();
+        Optional<SourceRoot> uncompiled = mainSourceRoots.stream().filter(sourceRoot -> !isCompiled(sourceRoot)).findFirst();
+        if (uncompiled.isPresent()) {
+            LOGGER.debug("The build output of project '{}' is not used, module '{}' is not compiled or outdated", project.getId(), uncompiled.get().module());
+            return List.of();
+        }
+
+        return mainSourceRoots
+                .stream()
+                .map(CompiledClasses::classDirectory)
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * @param coordinate the coordinate of a released version of a project
+     * @return the jar of the version in the local maven repository, if it has been downloaded or installed
+     */
+    public static Optional<Path> localRepositoryJar(ProjectCoordinate coordinate) {
+        File jar = new File(FileUtil.mavenLocalRepository(), "%s/%s/%s/%s-%s.jar".formatted(
+                coordinate.groupId().replace('.', '/'), coordinate.artifactId(), coordinate.version(), coordinate.artifactId(), coordinate.version()));
+
+        return jar.isFile() ? Optional.of(jar.toPath()) : Optional.empty();
+    }
+
+    private static Path classDirectory(SourceRoot sourceRoot) {
+        return sourceRoot.module().resolve("target").resolve("classes");
+    }
+
+    private static boolean isCompiled(SourceRoot sourceRoot) {
+        Path classDirectory = classDirectory(sourceRoot);
+        if (!Files.isDirectory(classDirectory)) {
+            return false;
+        }
+
+        Optional<FileTime> lastCompiled;
+        try (Stream<Path> files = Files.walk(classDirectory)) {
+            lastCompiled = lastModified(files.filter(file -> file.toString().endsWith(".class")));
+        } catch (IOException e) {
+            LOGGER.warn("Could not list the compiled classes in '{}'", classDirectory, e);
+            return false;
+        }
+        Optional<FileTime> lastChanged = lastModified(sourceRoot.javaFiles().stream());
+
+        return lastCompiled.isPresent() && (lastChanged.isEmpty() || lastCompiled.get().compareTo(lastChanged.get()) >= 0);
+    }
+
+    private static Optional<FileTime> lastModified(Stream<Path> files) {
+        return files
+                .map(file -> {
+                    try {
+                        return Optional.of(Files.getLastModifiedTime(file));
+                    } catch (IOException e) {
+                        return Optional.<FileTime>empty();
+                    }
+                })
+                .flatMap(Optional::stream)
+                .max(Comparator.naturalOrder());
+    }
+}
@@ -0,0 +1,64 @@
+package nl.jiankai.refactoring.core.project.bytecode;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Determines which library method an invoke instruction of a dependent calls. The owner of an invoked method is the
+ * static type it is invoked on, which may be a class of the dependent that inherits the method from the library, or a
+ * library class that inherits it from one of its super types. Like the symbol solver, a method that is overridden by
+ * the dependent resolves to the dependent's own declaration.
+ */
+public final class InvocationResolver {
+    private final Map<String, LibraryClass> libraryClasses;
+    private final Map<String, LibraryClass> dependentClasses;
+
+    public InvocationResolver(Collection<LibraryClass> libraryClasses, Collection<LibraryClass> dependentClasses) {
+        this.libraryClasses = byInternalName(libraryClasses);
+        this.dependentClasses = byInternalName(dependentClasses);
+    }
+
+    /**
+     * @param invocation the invoked method
+     * @return the qualified signature of the library method that is called, empty when another method is called
+     */
+    public Optional<String> resolve(MethodInvocation invocation) {
+        Deque<String> toVisit = new ArrayDeque<>(List.of(invocation.owner()));
+        Set<String> visited = new HashSet<>();
+
+        while (!toVisit.isEmpty()) {
+            String className = toVisit.poll();
+            if (!visited.add(className)) {
+                continue;
+            }
+
+            LibraryClass libraryClass = libraryClasses.get(className);
+            LibraryClass declaringClass = libraryClass != null ? libraryClass : dependentClasses.get(className);
+            if (declaringClass == null) {
+                continue;
+            }
+
+            Optional<LibraryMethod> declaredMethod = declaringClass
+                    .methods()
+                    .stream()
+                    .filter(method -> !method.isGenerated())
+                    .filter(method -> method.name().equals(invocation.name()) && method.descriptor().equals(invocation.descriptor()))
+                    .findFirst();
+            if (declaredMethod.isPresent()) {
+                return libraryClass == null ? Optional.empty() : Optional.of(libraryClass.qualifiedName() + "." + declaredMethod.get().signature());
+            }
+
+            if (declaringClass.superName() != null) {
+                toVisit.add(declaringClass.superName());
+            }
+            toVisit.addAll(declaringClass.interfaces());
+        }
+
+        return Optional.empty();
+    }
+
+    private static Map<String, LibraryClass> byInternalName(Collection<LibraryClass> classes) {
+        return classes.stream().collect(Collectors.toMap(LibraryClass::internalName, Function.identity(), (a, b) -> a));
+    }
+}
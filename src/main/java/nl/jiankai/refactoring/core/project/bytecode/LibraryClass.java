@@ -0,0 +1,49 @@
+package nl.jiankai.refactoring.core.project.bytecode;
+
+import javassist.bytecode.AccessFlag;
+
+import java.util.List;
+
+/**
+ * A class, interface, enum or annotation read from a class file
+ *
+ * @param internalName     the name of the class inside class files, such as {@code java/util/Map$Entry}
+ * @param qualifiedName    the qualified name of the class, such as {@code java.util.Map.Entry}
+ * @param superName        the internal name of the super class, null for {@code java/lang/Object} and modules
+ * @param interfaces       the internal names of the directly implemented interfaces
+ * @param accessFlags      the access flags of the class, for nested classes the flags as declared in the outer class
+ * @param outerName        the internal name of the class this class is a member of, null for top level classes
+ * @param local            whether the class is a local or anonymous class, which can not be referred to by name
+ * @param methods          the declared methods
+ */
+public record LibraryClass(String internalName, String qualifiedName, String superName, List<String> interfaces,
+                           int accessFlags, String outerName, boolean local, List<LibraryMethod> methods) {
+
+    public boolean isPublic() {
+        return (accessFlags & AccessFlag.PUBLIC) != 0;
+    }
+
+    public boolean isStatic() {
+        return (accessFlags & AccessFlag.STATIC) != 0;
+    }
+
+    public boolean isInterface() {
+        return (accessFlags & AccessFlag.INTERFACE) != 0 && !isAnnotation();
+    }
+
+    public boolean isAnnotation() {
+        return (accessFlags & AccessFlag.ANNOTATION) != 0;
+    }
+
+    public boolean isEnum() {
+        return (accessFlags & AccessFlag.ENUM) != 0;
+    }
+
+    public boolean isRecord() {
+        return "java/lang/Record".equals(superName);
+    }
+
+    public boolean isTopLevel() {
+        return outerName == null && !local;
+    }
+}
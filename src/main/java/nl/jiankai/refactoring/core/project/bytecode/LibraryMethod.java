@@ -0,0 +1,42 @@
+package nl.jiankai.refactoring.core.project.bytecode;
+
+import javassist.bytecode.AccessFlag;
+
+import java.util.List;
+
+/**
+ * A method declared in a class file
+ *
+ * @param name           the name of the method
+ * @param descriptor     the erased parameter and return types as they are used by the instructions calling the method
+ * @param accessFlags    the access flags of the method
+ * @param parameterTypes the parameter types as JavaParser describes them, including generics when they are known
+ */
+public record LibraryMethod(String name, String descriptor, int accessFlags, List<String> parameterTypes) {
+
+    /**
+     * @return the signature of the method in the format of {@code ResolvedMethodDeclaration#getSignature()}
+     */
+    public String signature() {
+        return name + "(" + String.join(", ", parameterTypes) + ")";
+    }
+
+    public boolean isPublic() {
+        return (accessFlags & AccessFlag.PUBLIC) != 0;
+    }
+
+    public boolean isPrivate() {
+        return (accessFlags & AccessFlag.PRIVATE) != 0;
+    }
+
+    public boolean isStatic() {
+        return (accessFlags & AccessFlag.STATIC) != 0;
+    }
+
+    /**
+     * @return whether the method was generated by the compiler, such as bridge methods, lambda bodies and initializers
+     */
+    public boolean isGenerated() {
+        return (accessFlags & (AccessFlag.SYNTHETIC | AccessFlag.BRIDGE)) != 0 || name.startsWith("<");
+    }
+}
@@ -0,0 +1,106 @@
+package nl.jiankai.refactoring.core.project.bytecode;
+
+import nl.jiankai.refactoring.configuration.CacheLocation;
+import nl.jiankai.refactoring.core.project.Project;
+import nl.jiankai.refactoring.core.project.source.SourceRootIndexCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * A snapshot of the types, method signatures and type hierarchy of a library at the checked out tree, stored as a jar
+ * of its compiled classes. The snapshot is built once per tree, so every commit of the library has its own snapshot
+ * file, which the type solver pool opens once and shares between all dependents that resolve against it. Dependents
+ * that declare the version of the library at that commit resolve the library against the snapshot instead of their
+ * own copy of it.
+ */
+public final class LibrarySnapshots {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LibrarySnapshots.class);
+
+    private LibrarySnapshots() {
+    }
+
+    /**
+     * Packs the up-to-date build output of the library into a snapshot, unless the snapshot of the checked out tree
+     * already exists. Without build output the jar of the library version in the local maven repository is used.
+     *
+     * @param library the checked out library
+     * @return the snapshot of the library, empty when it has no compiled classes
+     */
+    public static Optional<Path> of(Project library) {
+        Optional<String> treeId = SourceRootIndexCache.treeId(library.getLocalPath());
+        Path snapshot = Path.of(CacheLocation.LIBRARY_SNAPSHOTS, library.getId().replaceAll("[^\\w.-]", "_") + "-" + treeId.orElse("") + ".jar");
+        if (treeId.isPresent() && Files.isRegularFile(snapshot)) {
+            return Optional.of(snapshot);
+        }
+
+        List<Path> buildOutput = CompiledClasses.buildOutput(library);
+        if (buildOutput.isEmpty() || treeId.isEmpty()) {
+            return localRepositoryJar(library);
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            int classes = write(snapshot, buildOutput);
+            LOGGER.info("Created a snapshot of {} classes of library '{}' in {} ms", classes, library.getId(), System.currentTimeMillis() - start);
+            return Optional.of(snapshot);
+        } catch (IOException e) {
+            LOGGER.warn("Could not create a snapshot of library '{}'", library.getId(), e);
+            return localRepositoryJar(library);
+        }
+    }
+
+    private static Optional<Path> localRepositoryJar(Project library) {
+        try {
+            return CompiledClasses.localRepositoryJar(library.getProjectVersion().coordinate());
+        } catch (Exception e) {
+            LOGGER.warn("Could not determine the version of library '{}'", library.getId(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The class files of the modules are written to a temporary jar first, so a snapshot is either complete or absent
+     */
+    private static int write(Path snapshot, List<Path> classDirectories) throws IOException {
+        Files.createDirectories(snapshot.getParent());
+        Path temporaryFile = Files.createTempFile(snapshot.getParent(), snapshot.getFileName().toString(), ".tmp");
+        Set<String> entries = new HashSet<>();
+
+        try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(temporaryFile))) {
+            for (Path classDirectory : classDirectories) {
+                List<Path> classFiles;
+                try (Stream<Path> files = Files.walk(classDirectory)) {
+                    classFiles = files.filter(file -> file.toString().endsWith(".class")).sorted().toList();
+                }
+
+                for (Path classFile : classFiles) {
+                    String entry = classDirectory.relativize(classFile).toString().replace('\\', '/');
+                    // the first module declaring a class wins, like it would on a classpath
+                    if (entries.add(entry)) {
+                        jar.putNextEntry(new JarEntry(entry));
+                        Files.copy(classFile, jar);
+                        jar.closeEntry();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+
+        Files.move(temporaryFile, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return entries.size();
+    }
+}
@@ -0,0 +1,11 @@
+package nl.jiankai.refactoring.core.project.bytecode;
+
+/**
+ * A method as it is referred to by an invoke instruction
+ *
+ * @param owner      the internal name of the class the method is invoked on, which may inherit the method
+ * @param name       the name of the method
+ * @param descriptor the erased parameter and return types of the method
+ */
+public record MethodInvocation(String owner, String name, String descriptor) {
+}
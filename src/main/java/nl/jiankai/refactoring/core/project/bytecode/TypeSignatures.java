@@ -0,0 +1,178 @@
+package nl.jiankai.refactoring.core.project.bytecode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Converts method descriptors and generic method signatures of class files into the parameter types as JavaParser
+ * describes them, so signatures read from bytecode are equal to the ones the symbol solver produces for the source.
+ * <p>
+ * Class files do not distinguish a nested class from a class with a {@code $} in its name, every {@code $} is assumed
+ * to separate a nested class from its outer class.
+ */
+public final class TypeSignatures {
+
+    private TypeSignatures() {
+    }
+
+    /**
+     * @param signature a method descriptor such as {@code (ILjava/lang/String;)V} or a generic method signature
+     * @param varargs   whether the method accepts a variable number of arguments
+     * @return the described parameter types
+     */
+    public static List<String> parameterTypes(String signature, boolean varargs) {
+        Reader reader = new Reader(signature);
+        reader.skipTypeParameters();
+        reader.expect('(');
+
+        List<String> parameterTypes = new ArrayList<>();
+        while (reader.peek() != ')') {
+            parameterTypes.add(reader.type());
+        }
+
+        if (varargs && !parameterTypes.isEmpty()) {
+            int last = parameterTypes.size() - 1;
+            String arrayType = parameterTypes.get(last);
+            if (arrayType.endsWith("[]")) {
+                parameterTypes.set(last, arrayType.substring(0, arrayType.length() - 2) + "...");
+            }
+        }
+
+        return parameterTypes;
+    }
+
+    /**
+     * @param internalName a class name as used inside class files, such as {@code java/util/Map$Entry}
+     * @return the qualified name of the class, such as {@code java.util.Map.Entry}
+     */
+    public static String qualifiedName(String internalName) {
+        return internalName.replace('/', '.').replace('$', '.');
+    }
+
+    /**
+     * Parses the grammar of field and method signatures from the JVM specification, of which descriptors are a subset
+     */
+    private static final class Reader {
+        private final String signature;
+        private int position;
+
+        private Reader(String signature) {
+            this.signature = signature;
+        }
+
+        private char peek() {
+            if (position >= signature.length()) {
+                throw new IllegalArgumentException("Unexpected end of signature '%s'".formatted(signature));
+            }
+            return signature.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            char actual = next();
+            if (actual != expected) {
+                throw new IllegalArgumentException("Expected '%s' but found '%s' at %s in signature '%s'".formatted(expected, actual, position - 1, signature));
+            }
+        }
+
+        private void skipTypeParameters() {
+            if (peek() != '<') {
+                return;
+            }
+
+            int depth = 0;
+            do {
+                char c = next();
+                if (c == '<') {
+                    depth++;
+                } else if (c == '>') {
+                    depth--;
+                }
+            } while (depth > 0);
+        }
+
+        private String type() {
+            char c = next();
+            return switch (c) {
+                case 'B' -> "byte";
+                case 'C' -> "char";
+                case 'D' -> "double";
+                case 'F' -> "float";
+                case 'I' -> "int";
+                case 'J' -> "long";
+                case 'S' -> "short";
+                case 'Z' -> "boolean";
+                case 'V' -> "void";
+                case '[' -> type() + "[]";
+                case 'T' -> until(';');
+                case 'L' -> classType();
+                default -> throw new IllegalArgumentException("Unexpected '%s' at %s in signature '%s'".formatted(c, position - 1, signature));
+            };
+        }
+
+        /**
+         * Only the type arguments of the innermost class are described, like JavaParser does for nested types
+         */
+        private String classType() {
+            StringBuilder name = new StringBuilder();
+            String typeArguments = "";
+
+            while (true) {
+                char c = next();
+                switch (c) {
+                    case ';' -> {
+                        return qualifiedName(name.toString()) + typeArguments;
+                    }
+                    case '<' -> typeArguments = typeArguments();
+                    case '.' -> {
+                        name.append('$');
+                        typeArguments = "";
+                    }
+                    default -> name.append(c);
+                }
+            }
+        }
+
+        private String typeArguments() {
+            StringJoiner typeArguments = new StringJoiner(", ", "<", ">");
+            while (peek() != '>') {
+                char c = peek();
+                switch (c) {
+                    case '*' -> {
+                        next();
+                        typeArguments.add("?");
+                    }
+                    case '+' -> {
+                        next();
+                        typeArguments.add("? extends " + type());
+                    }
+                    case '-' -> {
+                        next();
+                        typeArguments.add("? super " + type());
+                    }
+                    default -> typeArguments.add(type());
+                }
+            }
+            expect('>');
+
+            return typeArguments.toString();
+        }
+
+        private String until(char end) {
+            int endIndex = signature.indexOf(end, position);
+            if (endIndex < 0) {
+                throw new IllegalArgumentException("Unexpected end of signature '%s'".formatted(signature));
+            }
+
+            String value = signature.substring(position, endIndex);
+            position = endIndex + 1;
+            return value;
+        }
+    }
+}
@@ -17,12 +17,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public final class MavenProjectDependencyResolver implements ProjectDependencyResolver {
     private static final Logger LOGGER = LoggerFactory.getLogger(MavenProjectDependencyResolver.class);
+    /**
+     * A project is only installed by one thread at a time, different projects are installed at the same time
+     */
+    private static final Map<Path, Object> INSTALL_LOCKS = new ConcurrentHashMap<>();
 
     @Override
     public Collection<Dependency> resolve(File projectRootPath) {
@@ -70,19 +76,26 @@ public final class MavenProjectDependencyResolver implements ProjectDependencyRe
 
     @Override
     public void install(File projectRootPath) {
-        if (dependenciesAlreadySatisfied(projectRootPath)) {
-            LOGGER.info("[{}]: Installing project dependencies is not necessary. All dependencies have already been satisfied.", projectRootPath);
-        } else {
-            File file = FileUtil.findPomFile(projectRootPath);
-            InvocationRequest request = new DefaultInvocationRequest();
-            request.setPomFile(file);
-            request.setGoals(Collections.singletonList("compile"));
-            Invoker invoker = new DefaultInvoker();
-
-            try {
-                invoker.execute(request);
-            } catch (MavenInvocationException e) {
-                LOGGER.warn("Could not install dependencies for project on path '{}'", projectRootPath.getPath(), e);
+        synchronized (INSTALL_LOCKS.computeIfAbsent(projectRootPath.getAbsoluteFile().toPath().normalize(), path -> new Object())) {
+            if (dependenciesAlreadySatisfied(projectRootPath)) {
+                LOGGER.info("[{}]: Installing project dependencies is not necessary. All dependencies have already been satisfied.", projectRootPath);
+            } else {
+                File file = FileUtil.findPomFile(projectRootPath);
+                InvocationRequest request = new DefaultInvocationRequest();
+                request.setPomFile(file);
+                request.setGoals(Collections.singletonList("compile"));
+                // builds of other projects may download to the same local repository at the same time
+                Properties properties = new Properties();
+                properties.setProperty("aether.syncContext.named.factory", "file-lock");
+                properties.setProperty("aether.syncContext.named.nameMapper", "file-gav");
+                request.setProperties(properties);
+                Invoker invoker = new DefaultInvoker();
+
+                try {
+                    invoker.execute(request);
+                } catch (MavenInvocationException e) {
+                    LOGGER.warn("Could not install dependencies for project on path '{}'", projectRootPath.getPath(), e);
+                }
             }
         }
     }
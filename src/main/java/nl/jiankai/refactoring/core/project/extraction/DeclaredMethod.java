@@ -0,0 +1,17 @@
+package nl.jiankai.refactoring.core.project.extraction;
+
+import nl.jiankai.refactoring.core.refactoring.Position;
+
+/**
+ * A method declared in a source file
+ *
+ * @param name               the simple name of the method
+ * @param declaringType      the fully qualified name of the type declaring the method
+ * @param qualifiedSignature the fully qualified signature or null when the method could not be resolved
+ * @param topLevelType       whether the declaring type is a top level type of the file
+ * @param publicApi          whether the method is part of the public api of the project
+ * @param position           the position of the method in the file or null if unknown
+ */
+public record DeclaredMethod(String name, String declaringType, String qualifiedSignature, boolean topLevelType,
+                             boolean publicApi, Position position) {
+}
@@ -0,0 +1,22 @@
+package nl.jiankai.refactoring.core.project.extraction;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import nl.jiankai.refactoring.core.storage.api.Identifiable;
+
+import java.util.List;
+
+/**
+ * The methods declared in a single source file
+ *
+ * @param blobId      the git blob id of the file content
+ * @param fingerprint the fingerprint of the classpath the methods were resolved with
+ * @param methods     the declared methods
+ */
+@JsonIgnoreProperties({"id"})
+public record FileDeclarations(String blobId, String fingerprint, List<DeclaredMethod> methods) implements Identifiable {
+
+    @Override
+    public String getId() {
+        return blobId + "-" + fingerprint;
+    }
+}
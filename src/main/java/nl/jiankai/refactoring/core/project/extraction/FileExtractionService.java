@@ -0,0 +1,242 @@
+package nl.jiankai.refactoring.core.project.extraction;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
+import nl.jiankai.refactoring.configuration.CacheLocation;
+import nl.jiankai.refactoring.core.project.query.MethodUsages;
+import nl.jiankai.refactoring.core.project.query.SignatureTable;
+import nl.jiankai.refactoring.core.project.resolution.OverloadTable;
+import nl.jiankai.refactoring.core.project.resolution.ResolutionBudgetExceededException;
+import nl.jiankai.refactoring.core.project.resolution.ResolutionQuarantine;
+import nl.jiankai.refactoring.core.project.resolution.TieredMethodResolver;
+import nl.jiankai.refactoring.core.project.source.ProjectSources;
+import nl.jiankai.refactoring.core.refactoring.Position;
+import nl.jiankai.refactoring.core.storage.api.CacheService;
+import nl.jiankai.refactoring.core.storage.filestorage.MultiFileCacheService;
+import nl.jiankai.refactoring.serialisation.JacksonSerializationService;
+import nl.jiankai.refactoring.util.HashingUtil;
+import nl.jiankai.refactoring.util.JavaParserUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Extracts method calls and method declarations from the source files of a project. The extraction of every file is
+ * cached by the git blob id of its content together with a fingerprint of everything else that influences the result,
+ * so checking out a project at another commit only requires the files that actually changed to be parsed again.
+ * Files that exceed their resolution budget are not cached but quarantined, so they are skipped once they did so repeatedly.
+ */
+public class FileExtractionService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileExtractionService.class);
+    // the results of a file are looked up at most once per project, so they are only kept on disk
+    private final CacheService<FileMethodCalls> methodCallsCacheService = new MultiFileCacheService<>(CacheLocation.FILE_METHOD_CALLS, new JacksonSerializationService(), FileMethodCalls.class, 0);
+    private final CacheService<FileDeclarations> declarationsCacheService = new MultiFileCacheService<>(CacheLocation.FILE_DECLARATIONS, new JacksonSerializationService(), FileDeclarations.class, 0);
+
+    /**
+     * Counts the calls to methods with one of the given names in all source files of the project. Unless disabled, the
+     * calls that can be decided from the overloads of the signatures are not resolved by the symbol solver.
+     *
+     * @param projectSources the sources of the project
+     * @param signatures     the signatures to count the calls of, calls to other signatures are not counted
+     * @param methodNames    the simple names of the methods to count the calls of
+     * @param prefilter      the filter deciding which files may contain such calls
+     * @return the number of calls per signature id
+     */
+    public long[] methodCalls(ProjectSources projectSources, SignatureTable signatures, Set<String> methodNames, SourcePrefilter prefilter) {
+        return methodCalls(projectSources, List.of(signatures), methodNames, prefilter).get(0);
+    }
+
+    /**
+     * Counts the calls to the methods of several libraries in a single pass, so every file is parsed and every call
+     * is resolved only once, however many of the libraries it may call
+     *
+     * @param projectSources  the sources of the project, resolving against all of the libraries
+     * @param signatureTables the signatures of every library to count the calls of
+     * @param methodNames     the simple names of the methods of all libraries
+     * @param prefilter       the filter deciding which files may contain calls to any of the libraries
+     * @return the number of calls per signature id, per signature table in the same order
+     */
+    public List<long[]> methodCalls(ProjectSources projectSources, List<SignatureTable> signatureTables, Set<String> methodNames, SourcePrefilter prefilter) {
+        Set<String> signatures = new TreeSet<>();
+        signatureTables.forEach(signatureTable -> signatures.addAll(signatureTable.signatures()));
+        boolean tiered = ApplicationConfiguration.tieredResolution();
+        // the decisions of the first tier depend on the signatures, the symbol solver only on the classpath
+        String fingerprint = fingerprint(projectSources.classpathFingerprint() + String.join(",", new TreeSet<>(methodNames))
+                + (tiered ? String.join(",", signatures) : ""));
+        TieredMethodResolver resolver = new TieredMethodResolver(
+                tiered ? OverloadTable.of(signatures) : OverloadTable.empty(), projectSources.resolutionMemo(), projectSources::typeSolver, ApplicationConfiguration.tieredResolutionAuditRate());
+        List<long[]> methodCalls = signatureTables.stream().map(SignatureTable::newCounters).toList();
+        AtomicInteger parsedFiles = new AtomicInteger();
+        AtomicInteger skippedFiles = new AtomicInteger();
+        AtomicLong skippedBytes = new AtomicLong();
+        AtomicInteger quarantinedFiles = new AtomicInteger();
+
+        JavaParserUtil
+                .mapFiles(projectSources.javaFiles(), file -> read(file).filter(content -> {
+                    if (prefilter.mayMatch(content)) {
+                        return true;
+                    }
+                    skippedFiles.incrementAndGet();
+                    skippedBytes.addAndGet(content.length);
+                    return false;
+                }).flatMap(content -> {
+                    String blobId = HashingUtil.gitBlobId(content);
+                    return methodCallsCacheService
+                            .get(blobId + "-" + fingerprint)
+                            .or(() -> {
+                                if (ResolutionQuarantine.getInstance().skip(file, blobId)) {
+                                    quarantinedFiles.incrementAndGet();
+                                    return Optional.empty();
+                                }
+                                parsedFiles.incrementAndGet();
+                                return extractMethodCalls(projectSources, resolver, file, content, blobId, methodNames).map(calls -> {
+                                    FileMethodCalls extracted = new FileMethodCalls(blobId, fingerprint, calls);
+                                    methodCallsCacheService.write(extracted);
+                                    return extracted;
+                                });
+                            });
+                }))
+                .stream()
+                .flatMap(Optional::stream)
+                .forEach(fileMethodCalls -> {
+                    for (int i = 0; i < signatureTables.size(); i++) {
+                        signatureTables.get(i).count(fileMethodCalls.methodCalls(), methodCalls.get(i));
+                    }
+                });
+
+        LOGGER.info("{} out of {} files of project '{}' had to be parsed to extract the method calls, the prefilter skipped {} files ({} bytes) and {} quarantined files were skipped", parsedFiles.get(), projectSources.javaFiles().size(), projectSources.projectPath(), skippedFiles.get(), skippedBytes.get(), quarantinedFiles.get());
+        LOGGER.info("Method resolution memo of project '{}': {}", projectSources.projectPath(), projectSources.resolutionMemo().statistics());
+        LOGGER.info("Tiered resolution of project '{}': {}", projectSources.projectPath(), resolver.statistics());
+        return methodCalls;
+    }
+
+    /**
+     * Collects the methods declared by the top level types of the given files and the public api methods
+     *
+     * @param projectSources the sources of the project
+     * @param files          the files of the project to collect the declared methods of
+     * @return the declared methods
+     */
+    public List<DeclaredMethod> declaredMethods(ProjectSources projectSources, List<Path> files) {
+        String fingerprint = projectSources.classpathFingerprint();
+        AtomicInteger parsedFiles = new AtomicInteger();
+
+        List<DeclaredMethod> declaredMethods = JavaParserUtil
+                .mapFiles(files, file -> read(file).flatMap(content -> {
+                    String blobId = HashingUtil.gitBlobId(content);
+                    return declarationsCacheService
+                            .get(blobId + "-" + fingerprint)
+                            .or(() -> {
+                                if (ResolutionQuarantine.getInstance().skip(file, blobId)) {
+                                    return Optional.empty();
+                                }
+                                parsedFiles.incrementAndGet();
+                                return extractDeclaredMethods(projectSources, file, content, blobId).map(methods -> {
+                                    FileDeclarations extracted = new FileDeclarations(blobId, fingerprint, methods);
+                                    declarationsCacheService.write(extracted);
+                                    return extracted;
+                                });
+                            });
+                }))
+                .stream()
+                .flatMap(Optional::stream)
+                .flatMap(fileDeclarations -> fileDeclarations.methods().stream())
+                .toList();
+
+        LOGGER.info("{} out of {} files of project '{}' had to be parsed to extract the declared methods", parsedFiles.get(), files.size(), projectSources.projectPath());
+        return declaredMethods;
+    }
+
+    private Optional<Map<String, Long>> extractMethodCalls(ProjectSources projectSources, TieredMethodResolver resolver, Path file, byte[] content, String blobId, Set<String> methodNames) {
+        return extract(projectSources, file, content, blobId, HashMap::new, compilationUnit -> {
+            Map<String, Long> methodCalls = new HashMap<>();
+            compilationUnit
+                    .findAll(MethodCallExpr.class, methodCall -> methodNames.contains(methodCall.getNameAsString()))
+                    .forEach(methodCall -> methodCalls.merge(
+                            resolver.resolve(methodCall).orElse(MethodUsages.UNRESOLVED_SIGNATURE), 1L, Long::sum));
+            return methodCalls;
+        });
+    }
+
+    private Optional<List<DeclaredMethod>> extractDeclaredMethods(ProjectSources projectSources, Path file, byte[] content, String blobId) {
+        return extract(projectSources, file, content, blobId, List::of, compilationUnit -> {
+            Set<MethodDeclaration> publicMethods = Collections.newSetFromMap(new IdentityHashMap<>());
+            JavaParserUtil.getPublicMethods(compilationUnit).forEach(publicMethods::add);
+
+            return compilationUnit
+                    .findAll(ClassOrInterfaceDeclaration.class)
+                    .stream()
+                    .flatMap(type -> type
+                            .getMethods()
+                            .stream()
+                            .filter(method -> type.isTopLevelType() || publicMethods.contains(method))
+                            .map(method -> toDeclaredMethod(type, method, publicMethods.contains(method))))
+                    .toList();
+        });
+    }
+
+    private DeclaredMethod toDeclaredMethod(ClassOrInterfaceDeclaration type, MethodDeclaration method, boolean publicApi) {
+        String qualifiedSignature;
+        try {
+            qualifiedSignature = method.resolve().getQualifiedSignature();
+        } catch (ResolutionBudgetExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.debug("Could not resolve method '{}'", method.getNameAsString(), e);
+            qualifiedSignature = null;
+        }
+
+        Position position = method
+                .getRange()
+                .map(range -> new Position(range.begin.column, range.end.column, range.begin.line, range.end.line))
+                .orElse(null);
+
+        return new DeclaredMethod(method.getNameAsString(), type.getFullyQualifiedName().orElse(""), qualifiedSignature, type.isTopLevelType(), publicApi, position);
+    }
+
+    /**
+     * @return the extracted information, the unparsable result when the file could not be parsed, or empty when the
+     * resolution of the file exceeded its budget, which should not be cached
+     */
+    private <R> Optional<R> extract(ProjectSources projectSources, Path file, byte[] content, String blobId, Supplier<R> unparsable, Function<CompilationUnit, R> extractor) {
+        try {
+            return Optional.of(JavaParserUtil.extract(file, content, projectSources.parser(), extractor).orElseGet(unparsable));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the type solver for project '%s'".formatted(projectSources.projectPath()), e);
+        } catch (ResolutionBudgetExceededException e) {
+            ResolutionQuarantine.getInstance().quarantine(blobId, e);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<byte[]> read(Path file) {
+        try {
+            return Optional.of(Files.readAllBytes(file));
+        } catch (IOException e) {
+            LOGGER.warn("Could not read file '{}'", file, e);
+            return Optional.empty();
+        }
+    }
+
+    private String fingerprint(String plain) {
+        try {
+            return HashingUtil.md5Hash(plain);
+        } catch (NoSuchAlgorithmException e) {
+            LOGGER.warn("Couldn't compute the fingerprint due to the hashing algorithm not being present", e);
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package nl.jiankai.refactoring.core.project.extraction;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import nl.jiankai.refactoring.core.storage.api.Identifiable;
+
+import java.util.Map;
+
+/**
+ * The resolved method calls of a single source file
+ *
+ * @param blobId      the git blob id of the file content
+ * @param fingerprint the fingerprint of the classpath and the method names the calls were resolved with
+ * @param methodCalls the number of calls per fully qualified signature
+ */
+@JsonIgnoreProperties({"id"})
+public record FileMethodCalls(String blobId, String fingerprint, Map<String, Long> methodCalls) implements Identifiable {
+
+    @Override
+    public String getId() {
+        return blobId + "-" + fingerprint;
+    }
+}
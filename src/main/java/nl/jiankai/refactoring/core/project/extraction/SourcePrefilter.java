@@ -0,0 +1,196 @@
+package nl.jiankai.refactoring.core.project.extraction;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Decides on the raw bytes of a source file whether the file can possibly call one of the given methods, so files that
+ * can not are skipped before they are parsed and type-solved. All patterns are matched in a single pass with an
+ * Aho-Corasick automaton and only count when they are not part of a longer identifier.
+ * <p>
+ * A file that mentions a method name in a comment or string is still parsed, the filter only needs to be conservative.
+ * Requiring one of the package prefixes as well is stricter, but misses calls that do not need an import, such as calls
+ * to methods inherited through a super class of the same project, so it is disabled by default.
+ */
+public final class SourcePrefilter {
+    private static final int[] NO_MATCHES = new int[0];
+    private static final SourcePrefilter ACCEPT_ALL = new SourcePrefilter(List.of(), List.of(), false, true);
+    private final boolean acceptAll;
+    private final boolean requirePackage;
+    private final int[] byteClasses = new int[256];
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final int[][] matches;
+    private final int[] patternLengths;
+    private final boolean[] packagePatterns;
+
+    private SourcePrefilter(Collection<String> identifiers, Collection<String> packagePrefixes, boolean requirePackage, boolean acceptAll) {
+        this.acceptAll = acceptAll;
+        this.requirePackage = requirePackage;
+
+        List<byte[]> patterns = new ArrayList<>();
+        List<Boolean> packagePattern = new ArrayList<>();
+        identifiers.stream().filter(identifier -> !identifier.isEmpty()).distinct().forEach(identifier -> {
+            patterns.add(identifier.getBytes(StandardCharsets.UTF_8));
+            packagePattern.add(false);
+        });
+        if (requirePackage) {
+            packagePrefixes.stream().filter(prefix -> !prefix.isEmpty()).distinct().forEach(prefix -> {
+                patterns.add(prefix.getBytes(StandardCharsets.UTF_8));
+                packagePattern.add(true);
+            });
+        }
+
+        // every byte that occurs in a pattern gets its own symbol, all other bytes lead back to the root
+        int symbols = 1;
+        for (byte[] pattern : patterns) {
+            for (byte b : pattern) {
+                if (byteClasses[b & 0xff] == 0) {
+                    byteClasses[b & 0xff] = symbols++;
+                }
+            }
+        }
+        this.alphabetSize = symbols;
+        this.patternLengths = patterns.stream().mapToInt(pattern -> pattern.length).toArray();
+        this.packagePatterns = new boolean[patterns.size()];
+        for (int i = 0; i < packagePatterns.length; i++) {
+            packagePatterns[i] = packagePattern.get(i);
+        }
+
+        List<int[]> trie = new ArrayList<>();
+        List<int[]> output = new ArrayList<>();
+        trie.add(newState());
+        output.add(NO_MATCHES);
+        for (int patternId = 0; patternId < patterns.size(); patternId++) {
+            int state = 0;
+            for (byte b : patterns.get(patternId)) {
+                int symbol = byteClasses[b & 0xff];
+                if (trie.get(state)[symbol] < 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newState());
+                    output.add(NO_MATCHES);
+                }
+                state = trie.get(state)[symbol];
+            }
+            output.set(state, append(output.get(state), patternId));
+        }
+
+        this.transitions = new int[trie.size() * alphabetSize];
+        this.matches = new int[trie.size()][];
+        int[] failure = new int[trie.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        matches[0] = output.get(0);
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int next = trie.get(0)[symbol];
+            if (next > 0) {
+                transitions[symbol] = next;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matches[state] = concat(output.get(state), matches[failure[state]]);
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int next = trie.get(state)[symbol];
+                int fallback = transitions[failure[state] * alphabetSize + symbol];
+                if (next > 0 && symbol > 0) {
+                    failure[next] = fallback;
+                    transitions[state * alphabetSize + symbol] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * alphabetSize + symbol] = fallback;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param identifiers     the simple names of the methods that are looked for
+     * @param packagePrefixes the packages of the types declaring the methods
+     * @param requirePackage  whether a file also has to mention one of the packages
+     * @return a filter accepting the files that may call one of the methods
+     */
+    public static SourcePrefilter of(Collection<String> identifiers, Collection<String> packagePrefixes, boolean requirePackage) {
+        return new SourcePrefilter(identifiers, packagePrefixes, requirePackage, false);
+    }
+
+    /**
+     * @return a filter that does not skip any file
+     */
+    public static SourcePrefilter acceptAll() {
+        return ACCEPT_ALL;
+    }
+
+    /**
+     * @param content the raw content of a source file
+     * @return false when the file can not call any of the methods and does not have to be parsed
+     */
+    public boolean mayMatch(byte[] content) {
+        if (acceptAll) {
+            return true;
+        }
+
+        boolean identifierFound = false;
+        boolean packageFound = !requirePackage;
+        int state = 0;
+        for (int i = 0; i < content.length; i++) {
+            state = transitions[state * alphabetSize + byteClasses[content[i] & 0xff]];
+            for (int patternId : matches[state]) {
+                if ((packagePatterns[patternId] ? packageFound : identifierFound)
+                        || !isBoundary(content, i - patternLengths[patternId])
+                        || !isBoundary(content, i + 1)) {
+                    continue;
+                }
+
+                if (packagePatterns[patternId]) {
+                    packageFound = true;
+                } else {
+                    identifierFound = true;
+                }
+
+                if (identifierFound && packageFound) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private int[] newState() {
+        int[] state = new int[alphabetSize];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    /**
+     * Bytes outside of ascii are treated as a boundary, which may only cause a file to be parsed needlessly
+     */
+    private static boolean isBoundary(byte[] content, int index) {
+        if (index < 0 || index >= content.length) {
+            return true;
+        }
+
+        char c = (char) (content[index] & 0xff);
+        return c >= 0x80 || !(Character.isLetterOrDigit(c) || c == '_' || c == '$');
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] appended = Arrays.copyOf(values, values.length + 1);
+        appended[values.length] = value;
+        return appended;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        if (first.length == 0) {
+            return second;
+        }
+
+        int[] concatenated = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, concatenated, first.length, second.length);
+        return concatenated;
+    }
+}
@@ -0,0 +1,14 @@
+package nl.jiankai.refactoring.core.project.index;
+
+import nl.jiankai.refactoring.core.refactoring.Position;
+
+/**
+ * A resolved method call in the sources of a project
+ *
+ * @param filePath    the absolute path of the file containing the call
+ * @param packageName the package of the file
+ * @param className   the name of the class containing the call, empty when it is not inside a class
+ * @param position    the position of the call in the file
+ */
+public record CallSite(String filePath, String packageName, String className, Position position) {
+}
@@ -0,0 +1,161 @@
+package nl.jiankai.refactoring.core.project.index;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithName;
+import nl.jiankai.refactoring.configuration.CacheLocation;
+import nl.jiankai.refactoring.core.project.resolution.MethodResolutionMemo;
+import nl.jiankai.refactoring.core.project.source.ProjectSources;
+import nl.jiankai.refactoring.core.refactoring.Position;
+import nl.jiankai.refactoring.util.HashingUtil;
+import nl.jiankai.refactoring.util.JavaParserUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Stream;
+
+/**
+ * The call sites of all resolved method calls in the analysed projects, with a {@link CallSiteSegment} per project
+ * and classpath. A project is indexed the first time its call sites are needed, resolving every call once, after which
+ * the calls of any signature are looked up in its segment instead of parsing the project again.
+ * <p>
+ * Segments are keyed on the path, size and modification time of every java file that is resolved, so checking out
+ * another commit as well as uncommitted and untracked changes make the project be indexed again. Outdated segments of
+ * the same project and classpath are removed once the project has been indexed again.
+ */
+public final class CallSiteIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CallSiteIndex.class);
+    private static final CallSiteIndex INSTANCE = new CallSiteIndex(Path.of(CacheLocation.CALL_SITE_INDEX));
+    private final Path directory;
+    private final Map<Path, FutureTask<CallSiteSegment>> segments = new ConcurrentHashMap<>();
+
+    private CallSiteIndex(Path directory) {
+        this.directory = directory;
+    }
+
+    public static CallSiteIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Projects that are being indexed by another thread are waited for instead of being indexed twice
+     *
+     * @param projectSources the sources of the project
+     * @return the segment of the project in its current state, indexing the project first when it has not been
+     * indexed yet, or empty when the project could not be indexed
+     */
+    public Optional<CallSiteSegment> segment(ProjectSources projectSources) {
+        String segmentPrefix = hash(projectSources.projectPath().getAbsoluteFile().toPath().normalize().toString()) + "-"
+                + projectSources.classpathFingerprint() + "-";
+        Path segmentFile = directory.resolve(segmentPrefix + sourcesHash(projectSources) + ".seg");
+        FutureTask<CallSiteSegment> segment = segments.get(segmentFile);
+        if (segment == null) {
+            FutureTask<CallSiteSegment> opening = new FutureTask<>(() -> {
+                if (!Files.isRegularFile(segmentFile)) {
+                    index(projectSources, segmentFile);
+                    removeOtherSegments(segmentPrefix, segmentFile);
+                }
+                return CallSiteSegment.open(segmentFile);
+            });
+            segment = segments.putIfAbsent(segmentFile, opening);
+            if (segment == null) {
+                segment = opening;
+                opening.run();
+            }
+        }
+
+        try {
+            return Optional.of(segment.get());
+        } catch (ExecutionException e) {
+            segments.remove(segmentFile, segment);
+            LOGGER.warn("Could not use the call site index of project '{}'", projectSources.projectPath(), e.getCause());
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+
+    private void index(ProjectSources projectSources, Path segmentFile) throws IOException {
+        long start = System.currentTimeMillis();
+        MethodResolutionMemo resolutionMemo = projectSources.resolutionMemo();
+        List<CallSiteSegment.FileCalls> files = JavaParserUtil.extract(projectSources, compilationUnit -> new CallSiteSegment.FileCalls(
+                compilationUnit.getStorage().map(storage -> storage.getPath().toAbsolutePath().toString()).orElse(""),
+                compilationUnit.getPackageDeclaration().map(NodeWithName::getNameAsString).orElse(""),
+                calls(compilationUnit, resolutionMemo)));
+
+        CallSiteSegment.write(segmentFile, files);
+        LOGGER.info("Indexed the call sites of {} files of project '{}' in {} ms", files.size(), projectSources.projectPath(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Calls that can not be resolved are left out
+     */
+    private List<CallSiteSegment.Call> calls(CompilationUnit compilationUnit, MethodResolutionMemo resolutionMemo) {
+        return compilationUnit
+                .findAll(MethodCallExpr.class)
+                .stream()
+                .flatMap(methodCall -> resolutionMemo.resolve(methodCall).stream().map(signature -> new CallSiteSegment.Call(
+                        signature,
+                        getClassName(methodCall),
+                        methodCall
+                                .getRange()
+                                .map(range -> new Position(range.begin.column, range.end.column, range.begin.line, range.end.line))
+                                .orElse(new Position(0, 0, 0, 0)))))
+                .toList();
+    }
+
+    /**
+     * Segments of other projects or classpaths are kept, because they may still be in use
+     */
+    private void removeOtherSegments(String segmentPrefix, Path segmentFile) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().startsWith(segmentPrefix) && !file.equals(segmentFile)).toList()) {
+                segments.remove(file);
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not remove the outdated call site segments of '{}'", segmentFile, e);
+        }
+    }
+
+    private static String sourcesHash(ProjectSources projectSources) {
+        StringBuilder sources = new StringBuilder();
+        for (Path javaFile : projectSources.javaFiles()) {
+            File file = javaFile.toFile();
+            sources.append(file.getAbsolutePath()).append(':').append(file.length()).append(':').append(file.lastModified()).append(File.pathSeparator);
+        }
+        return hash(sources.toString());
+    }
+
+    private static String getClassName(Node node) {
+        while (node.hasParentNode()) {
+            node = node.getParentNode().get();
+            if (node instanceof ClassOrInterfaceDeclaration coid) {
+                return coid.getNameAsString();
+            }
+        }
+
+        return "";
+    }
+
+    private static String hash(String plain) {
+        try {
+            return HashingUtil.md5Hash(plain);
+        } catch (NoSuchAlgorithmException e) {
+            LOGGER.warn("Couldn't hash the segment key due to the hashing algorithm not being present", e);
+            throw new IllegalStateException(e);
+        }
+    }
+}
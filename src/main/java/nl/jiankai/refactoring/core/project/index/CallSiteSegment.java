@@ -0,0 +1,214 @@
+package nl.jiankai.refactoring.core.project.index;
+
+import nl.jiankai.refactoring.core.refactoring.Position;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The inverted index of the resolved method calls of a single project, from signature to the call sites of the
+ * signature. A segment is written once and then memory-mapped, so looking up a signature only binary searches the
+ * sorted signatures and reads the postings of that signature, without reading the rest of the segment.
+ * <p>
+ * A segment consists of a string table, the files, the sorted signatures with the offset of their postings, and the
+ * postings of all signatures as fixed size records of a file, a class name and a position.
+ */
+public final class CallSiteSegment {
+    private static final int FORMAT = 1;
+    private static final int POSTING_INTS = 6;
+    private final ByteBuffer buffer;
+    private final int stringCount;
+    private final int stringOffsets;
+    private final int heap;
+    private final int files;
+    private final int signatureCount;
+    private final int signatures;
+    private final int postingOffsets;
+    private final int postings;
+
+    private CallSiteSegment(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != FORMAT) {
+            throw new IOException("Unsupported call site segment format %d".formatted(buffer.getInt(0)));
+        }
+
+        stringCount = buffer.getInt(Integer.BYTES);
+        stringOffsets = 2 * Integer.BYTES;
+        heap = stringOffsets + (stringCount + 1) * Integer.BYTES;
+        int fileSection = heap + buffer.getInt(stringOffsets + stringCount * Integer.BYTES);
+        files = fileSection + Integer.BYTES;
+        int signatureSection = files + buffer.getInt(fileSection) * 2 * Integer.BYTES;
+        signatureCount = buffer.getInt(signatureSection);
+        signatures = signatureSection + Integer.BYTES;
+        postingOffsets = signatures + signatureCount * Integer.BYTES;
+        postings = postingOffsets + (signatureCount + 1) * Integer.BYTES;
+        if (postings + buffer.getInt(postingOffsets + signatureCount * Integer.BYTES) * POSTING_INTS * Integer.BYTES != buffer.limit()) {
+            throw new IOException("The call site segment is truncated");
+        }
+    }
+
+    /**
+     * @param file the location of the segment
+     * @return the memory-mapped segment, which stays mapped until it is garbage collected
+     * @throws IOException when the segment could not be read or is not a complete segment
+     */
+    public static CallSiteSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The call site segment '%s' is too large to be mapped".formatted(file));
+            }
+            return new CallSiteSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("The call site segment '%s' is corrupt".formatted(file), e);
+        }
+    }
+
+    /**
+     * @param signature a fully qualified signature
+     * @return the call sites of the signature in the order of the files and of the calls in a file
+     */
+    public List<CallSite> callSites(String signature) {
+        int low = 0;
+        int high = signatureCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = string(buffer.getInt(signatures + middle * Integer.BYTES)).compareTo(signature);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return postings(middle);
+            }
+        }
+
+        return List.of();
+    }
+
+    public int signatureCount() {
+        return signatureCount;
+    }
+
+    private List<CallSite> postings(int signature) {
+        int start = buffer.getInt(postingOffsets + signature * Integer.BYTES);
+        int end = buffer.getInt(postingOffsets + (signature + 1) * Integer.BYTES);
+        List<CallSite> callSites = new ArrayList<>(end - start);
+        for (int posting = start; posting < end; posting++) {
+            int offset = postings + posting * POSTING_INTS * Integer.BYTES;
+            int file = buffer.getInt(offset);
+            callSites.add(new CallSite(
+                    string(buffer.getInt(files + file * 2 * Integer.BYTES)),
+                    string(buffer.getInt(files + (file * 2 + 1) * Integer.BYTES)),
+                    string(buffer.getInt(offset + Integer.BYTES)),
+                    new Position(buffer.getInt(offset + 2 * Integer.BYTES), buffer.getInt(offset + 3 * Integer.BYTES),
+                            buffer.getInt(offset + 4 * Integer.BYTES), buffer.getInt(offset + 5 * Integer.BYTES))));
+        }
+
+        return callSites;
+    }
+
+    /**
+     * Only absolute reads are used, so the segment can be read by multiple threads at the same time
+     */
+    private String string(int id) {
+        int start = buffer.getInt(stringOffsets + id * Integer.BYTES);
+        byte[] bytes = new byte[buffer.getInt(stringOffsets + (id + 1) * Integer.BYTES) - start];
+        buffer.get(heap + start, bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Writes the segment to a temporary file first, so a segment on disk is always complete
+     *
+     * @param file  the location of the segment
+     * @param files the resolved calls per file of the project
+     * @throws IOException when the segment could not be written
+     */
+    static void write(Path file, List<FileCalls> files) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        int[] fileStrings = new int[files.size() * 2];
+        Map<String, List<int[]>> postingsBySignature = new TreeMap<>();
+        for (int fileId = 0; fileId < files.size(); fileId++) {
+            FileCalls fileCalls = files.get(fileId);
+            fileStrings[fileId * 2] = stringId(strings, fileCalls.filePath());
+            fileStrings[fileId * 2 + 1] = stringId(strings, fileCalls.packageName());
+            for (Call call : fileCalls.calls()) {
+                Position position = call.position();
+                postingsBySignature
+                        .computeIfAbsent(call.signature(), signature -> new ArrayList<>())
+                        .add(new int[]{fileId, stringId(strings, call.className()), position.columnStart(), position.columnEnd(), position.rowStart(), position.rowEnd()});
+            }
+        }
+        int[] signatureStrings = postingsBySignature.keySet().stream().mapToInt(signature -> stringId(strings, signature)).toArray();
+
+        Files.createDirectories(file.getParent());
+        Path temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            output.writeInt(FORMAT);
+            output.writeInt(strings.size());
+            List<byte[]> encodedStrings = strings.keySet().stream().map(string -> string.getBytes(UTF_8)).toList();
+            int offset = 0;
+            output.writeInt(offset);
+            for (byte[] encodedString : encodedStrings) {
+                offset += encodedString.length;
+                output.writeInt(offset);
+            }
+            for (byte[] encodedString : encodedStrings) {
+                output.write(encodedString);
+            }
+
+            output.writeInt(files.size());
+            for (int fileString : fileStrings) {
+                output.writeInt(fileString);
+            }
+
+            output.writeInt(signatureStrings.length);
+            for (int signatureString : signatureStrings) {
+                output.writeInt(signatureString);
+            }
+            int posting = 0;
+            output.writeInt(posting);
+            for (List<int[]> signaturePostings : postingsBySignature.values()) {
+                posting += signaturePostings.size();
+                output.writeInt(posting);
+            }
+            for (List<int[]> signaturePostings : postingsBySignature.values()) {
+                for (int[] signaturePosting : signaturePostings) {
+                    for (int value : signaturePosting) {
+                        output.writeInt(value);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int stringId(Map<String, Integer> strings, String string) {
+        Integer id = strings.get(string);
+        if (id == null) {
+            id = strings.size();
+            strings.put(string, id);
+        }
+        return id;
+    }
+
+    record FileCalls(String filePath, String packageName, List<Call> calls) {
+    }
+
+    record Call(String signature, String className, Position position) {
+    }
+}
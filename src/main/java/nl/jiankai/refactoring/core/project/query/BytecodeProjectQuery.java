@@ -0,0 +1,123 @@
+package nl.jiankai.refactoring.core.project.query;
+
+import nl.jiankai.refactoring.core.project.Project;
+import nl.jiankai.refactoring.core.project.bytecode.*;
+import nl.jiankai.refactoring.core.refactoring.javaparser.Dependency;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the calls to the public methods of a library by scanning the invoke instructions in the compiled classes of
+ * its dependents, so dependents do not have to be compiled or symbol solved. The published jar of a dependent in the
+ * local maven repository is used when it is available, otherwise its up-to-date build output. Dependents without
+ * compiled classes, and libraries without compiled classes, are analysed by the fallback query.
+ * <p>
+ * Calls through method references are not counted, which matches the source based analysis that only counts method
+ * call expressions.
+ */
+public class BytecodeProjectQuery implements ProjectQuery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BytecodeProjectQuery.class);
+    private final ProjectQuery fallback;
+
+    public BytecodeProjectQuery() {
+        this(new JavaParserProjectQuery());
+    }
+
+    public BytecodeProjectQuery(ProjectQuery fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public List<MethodUsages> mostUsedMethods(Project provider, Collection<? extends Project> users) {
+        LOGGER.info("Computing most used methods of project '{}' from bytecode", provider.getId());
+        List<Path> providerClasses = BytecodePublicApiExtractor.findCompiledClasses(provider);
+        if (providerClasses.isEmpty()) {
+            LOGGER.info("No compiled classes found for project '{}', falling back to the sources", provider.getId());
+            return fallback.mostUsedMethods(provider, users);
+        }
+
+        List<LibraryClass> libraryClasses = new ArrayList<>();
+        for (Path location : providerClasses) {
+            try {
+                libraryClasses.addAll(ClassFileScanner.scan(location));
+            } catch (IOException e) {
+                LOGGER.warn("Could not read the compiled classes in '{}', falling back to the sources", location, e);
+                return fallback.mostUsedMethods(provider, users);
+            }
+        }
+
+        SignatureTable signatureTable = SignatureTable.of(BytecodePublicApiExtractor.publicApi(libraryClasses).signatures());
+        long[] methodUsages = signatureTable.newCounters();
+        Set<String> libraryClassNames = libraryClasses.stream().map(LibraryClass::internalName).collect(Collectors.toSet());
+        List<Project> usersWithoutClasses = new ArrayList<>();
+        AtomicInteger processed = new AtomicInteger();
+
+        for (Project user : users) {
+            List<Path> userClasses = findUserClasses(user);
+            if (userClasses.isEmpty()) {
+                usersWithoutClasses.add(user);
+                continue;
+            }
+
+            try {
+                List<LibraryClass> dependentClasses = new ArrayList<>();
+                Map<MethodInvocation, Long> invocations = new HashMap<>();
+                for (Path location : userClasses) {
+                    // a dependent that bundles the library should not have the library's own calls counted
+                    ClassFileContents contents = ClassFileScanner.scanWithInvocations(location, className -> !libraryClassNames.contains(className));
+                    dependentClasses.addAll(contents.classes());
+                    contents.invocations().forEach((invocation, calls) -> invocations.merge(invocation, calls, Long::sum));
+                }
+
+                InvocationResolver invocationResolver = new InvocationResolver(libraryClasses, dependentClasses);
+                invocations.forEach((invocation, calls) -> invocationResolver
+                        .resolve(invocation)
+                        .map(signatureTable::id)
+                        .filter(id -> id != SignatureTable.UNKNOWN)
+                        .ifPresent(id -> methodUsages[id] += calls));
+                LOGGER.info("{} out of {} projects processed from bytecode", processed.incrementAndGet(), users.size());
+            } catch (IOException e) {
+                LOGGER.warn("Could not read the compiled classes of project '{}' in {}", user.getId(), userClasses, e);
+                usersWithoutClasses.add(user);
+            }
+        }
+
+        if (!usersWithoutClasses.isEmpty()) {
+            LOGGER.info("{} projects have no compiled classes, analysing them from their sources", usersWithoutClasses.size());
+            fallback
+                    .mostUsedMethods(provider, usersWithoutClasses)
+                    .forEach(usages -> {
+                        int id = signatureTable.id(usages.fullyQualifiedSignature());
+                        if (id != SignatureTable.UNKNOWN) {
+                            methodUsages[id] += usages.usages();
+                        }
+                    });
+        }
+
+        return signatureTable.toMethodUsages(methodUsages);
+    }
+
+    @Override
+    public Optional<String> findLatestVersionWithDependency(Project project, Dependency dependency) {
+        throw new UnsupportedOperationException();
+    }
+
+    private List<Path> findUserClasses(Project user) {
+        try {
+            Optional<Path> jar = CompiledClasses.localRepositoryJar(user.getProjectVersion().coordinate());
+            if (jar.isPresent()) {
+                return List.of(jar.get());
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not determine the version of project '{}'", user.getId(), e);
+        }
+
+        return CompiledClasses.buildOutput(user);
+    }
+}
@@ -0,0 +1,111 @@
+package nl.jiankai.refactoring.core.project.query;
+
+import nl.jiankai.refactoring.core.project.Project;
+import nl.jiankai.refactoring.core.project.bytecode.ClassFileScanner;
+import nl.jiankai.refactoring.core.project.bytecode.CompiledClasses;
+import nl.jiankai.refactoring.core.project.bytecode.LibraryClass;
+import nl.jiankai.refactoring.core.project.bytecode.LibraryMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Determines the public methods from the compiled classes of a project instead of its sources. The classes are taken
+ * from the {@code target/classes} directories of the project when they are at least as new as the sources, otherwise
+ * from the jar of the project version in the local maven repository. When neither exists the sources are used after all.
+ * <p>
+ * The same types count as public api as when the sources are used: public top level classes and interfaces and their
+ * public inner classes and nested interfaces. The signatures have the format of {@code getQualifiedSignature()}.
+ */
+public class BytecodePublicApiExtractor implements PublicApiExtractor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BytecodePublicApiExtractor.class);
+    private final PublicApiExtractor fallback;
+
+    public BytecodePublicApiExtractor(PublicApiExtractor fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public PublicApi extract(Project project) {
+        List<Path> compiledClasses = findCompiledClasses(project);
+        if (compiledClasses.isEmpty()) {
+            LOGGER.info("No compiled classes found for project '{}', determining the public methods from its sources", project.getId());
+            return fallback.extract(project);
+        }
+
+        long start = System.currentTimeMillis();
+        List<LibraryClass> classes = new ArrayList<>();
+        for (Path location : compiledClasses) {
+            try {
+                classes.addAll(ClassFileScanner.scan(location));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the compiled classes in '%s'".formatted(location), e);
+            }
+        }
+
+        PublicApi publicApi = publicApi(classes);
+        LOGGER.info("Read {} public methods from {} classes of project '{}' in {} ms", publicApi.signatures().size(), classes.size(), project.getId(), System.currentTimeMillis() - start);
+        return publicApi;
+    }
+
+    /**
+     * @param project the checked out project
+     * @return the up-to-date build output of the project, otherwise the jar of its version in the local maven repository
+     */
+    public static List<Path> findCompiledClasses(Project project) {
+        List<Path> buildOutput = CompiledClasses.buildOutput(project);
+        if (!buildOutput.isEmpty()) {
+            return buildOutput;
+        }
+
+        return CompiledClasses.localRepositoryJar(project.getProjectVersion().coordinate()).stream().toList();
+    }
+
+    /**
+     * @param classes all classes of a project
+     * @return the public methods declared by the classes
+     */
+    public static PublicApi publicApi(Collection<LibraryClass> classes) {
+        Set<String> methodNames = new HashSet<>();
+        Set<String> signatures = new HashSet<>();
+        Map<String, LibraryClass> classesByName = classes.stream().collect(Collectors.toMap(LibraryClass::internalName, Function.identity(), (a, b) -> a));
+        classes
+                .stream()
+                .filter(libraryClass -> isPublicApi(libraryClass, classesByName))
+                .forEach(libraryClass -> libraryClass
+                        .methods()
+                        .stream()
+                        .filter(method -> !method.isGenerated())
+                        .filter(method -> method.isPublic() || libraryClass.isInterface() && !method.isPrivate())
+                        .forEach(method -> {
+                            methodNames.add(method.name());
+                            signatures.add(qualifiedSignature(libraryClass, method));
+                        }));
+
+        return new PublicApi(methodNames, signatures);
+    }
+
+    public static String qualifiedSignature(LibraryClass libraryClass, LibraryMethod method) {
+        return libraryClass.qualifiedName() + "." + method.signature();
+    }
+
+    private static boolean isPublicApi(LibraryClass libraryClass, Map<String, LibraryClass> classesByName) {
+        if (libraryClass.local() || !libraryClass.isPublic() || libraryClass.isEnum() || libraryClass.isAnnotation() || libraryClass.isRecord()) {
+            return false;
+        }
+        if (libraryClass.isTopLevel()) {
+            return true;
+        }
+
+        LibraryClass outer = classesByName.get(libraryClass.outerName());
+        return outer != null
+                && (libraryClass.isInterface() || !libraryClass.isStatic())
+                && isPublicApi(outer, classesByName);
+    }
+}
@@ -1,46 +1,122 @@
 package nl.jiankai.refactoring.core.project.query;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
 import nl.jiankai.refactoring.configuration.CacheLocation;
 import nl.jiankai.refactoring.core.project.Project;
+import nl.jiankai.refactoring.core.project.bytecode.LibrarySnapshots;
 import nl.jiankai.refactoring.core.project.dependencymanagement.ProjectCoordinate;
+import nl.jiankai.refactoring.core.project.extraction.FileExtractionService;
+import nl.jiankai.refactoring.core.project.extraction.SourcePrefilter;
+import nl.jiankai.refactoring.core.project.resolution.TieredMethodResolver;
+import nl.jiankai.refactoring.core.project.source.ProjectSources;
+import nl.jiankai.refactoring.core.project.source.SourceRootIndexCache;
+import nl.jiankai.refactoring.core.project.typesolver.TypeSolverRegistry;
 import nl.jiankai.refactoring.core.refactoring.javaparser.Dependency;
 import nl.jiankai.refactoring.core.storage.api.CacheService;
 import nl.jiankai.refactoring.core.storage.api.Identifiable;
 import nl.jiankai.refactoring.core.storage.filestorage.MultiFileCacheService;
 import nl.jiankai.refactoring.serialisation.JacksonSerializationService;
+import nl.jiankai.refactoring.util.ConcurrencyUtil;
 import nl.jiankai.refactoring.util.JavaParserUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class JavaParserProjectQuery implements ProjectQuery {
     private static final Logger LOGGER = LoggerFactory.getLogger(JavaParserProjectQuery.class);
+    private static final int USAGE_MATRIX_CHECKPOINT = 50;
     private final CacheService<ProjectPublicMethodsResult> publicMethodsCacheService = new MultiFileCacheService<>(CacheLocation.PUBLIC_METHODS, new JacksonSerializationService(), ProjectPublicMethodsResult.class);
-    private final CacheService<ProjectMethodCallsResult> methodCallsCacheService = new MultiFileCacheService<>(CacheLocation.METHOD_CALLS, new JacksonSerializationService(), ProjectMethodCallsResult.class);
+    private final FileExtractionService fileExtractionService = new FileExtractionService();
+    private final PublicApiExtractor publicApiExtractor;
+
+    public JavaParserProjectQuery() {
+        SourcePublicApiExtractor sourcePublicApiExtractor = new SourcePublicApiExtractor(fileExtractionService);
+        this.publicApiExtractor = ApplicationConfiguration.bytecodePublicApi() ? new BytecodePublicApiExtractor(sourcePublicApiExtractor) : sourcePublicApiExtractor;
+    }
+
+    public JavaParserProjectQuery(PublicApiExtractor publicApiExtractor) {
+        this.publicApiExtractor = publicApiExtractor;
+    }
 
     @Override
     public List<MethodUsages> mostUsedMethods(Project provider, Collection<? extends Project> users) {
-        LOGGER.info("Computing most used methods of project '{}'", provider.getId());
-        Set<String> allMethodNames = new HashSet<>();
-        Map<String, Long> methodUsages = createMethodUsageMapAndPopulateAllMethodsMap(provider, allMethodNames);
+        return mostUsedMethods(Map.of(provider, users)).get(provider);
+    }
+
+    /**
+     * Analyses every dependent once for all providers it is a dependent of. Dependents are told apart by their
+     * coordinate and checked out tree, like in the usage matrices, so the same dependent cloned for several providers
+     * is analysed once too, but only when every clone is checked out at the same tree.
+     */
+    @Override
+    public Map<Project, List<MethodUsages>> mostUsedMethods(Map<? extends Project, ? extends Collection<? extends Project>> usersByProvider) {
+        List<Library> libraries = usersByProvider.keySet().stream().map(this::library).toList();
+        Map<String, Project> dependents = new LinkedHashMap<>();
+        Map<String, List<Library>> librariesByDependent = new HashMap<>();
+        for (Library library : libraries) {
+            for (Project user : usersByProvider.get(library.provider())) {
+                String dependent = dependentId(user);
+                dependents.putIfAbsent(dependent, user);
+                librariesByDependent.computeIfAbsent(dependent, key -> new ArrayList<>()).add(library);
+            }
+        }
+        if (libraries.size() > 1) {
+            LOGGER.info("Analysing {} distinct dependents of {} libraries in a single pass instead of {} passes", dependents.size(), libraries.size(), librariesByDependent.values().stream().mapToInt(List::size).sum());
+        }
+
+        TieredMethodResolver.Statistics tieredResolutionBefore = TieredMethodResolver.totalStatistics();
+        Map<List<Library>, SourcePrefilter> prefilters = new ConcurrentHashMap<>();
         AtomicInteger fullyProcessed = new AtomicInteger();
         AtomicInteger failed = new AtomicInteger();
-        users.forEach(project -> {
-            try {
-                computeMethodUsagesForProject(project, allMethodNames, methodUsages);
-            } catch (Exception e) {
-                LOGGER.warn("Failed to compute usages for project '{}'", project.getId());
-                failed.incrementAndGet();
-            }
-            LOGGER.info("{} out of {} projects processed ({} failures)", fullyProcessed.incrementAndGet(), users.size(), failed.get());
-        });
+        try {
+            forEachDependent(dependents.keySet(), dependent -> {
+                Project project = dependents.get(dependent);
+                List<Library> dependentLibraries = librariesByDependent.get(dependent);
+                try {
+                    SourcePrefilter prefilter = prefilters.computeIfAbsent(dependentLibraries, JavaParserProjectQuery::createPrefilter);
+                    List<long[]> projectUsages = computeMethodUsagesForProject(project, dependentLibraries, prefilter);
+                    for (int i = 0; i < dependentLibraries.size(); i++) {
+                        long[] methodUsages = dependentLibraries.get(i).methodUsages();
+                        // every dependent counts on its own, so the shared counters are only locked once per dependent
+                        synchronized (methodUsages) {
+                            for (int id = 0; id < methodUsages.length; id++) {
+                                methodUsages[id] += projectUsages.get(i)[id];
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to compute usages for project '{}'", project.getId(), e);
+                    failed.incrementAndGet();
+                }
+                int processed = fullyProcessed.incrementAndGet();
+                LOGGER.info("{} out of {} projects processed ({} failures)", processed, dependents.size(), failed.get());
+                if (processed % USAGE_MATRIX_CHECKPOINT == 0) {
+                    writeUsageMatrices(libraries);
+                }
+            });
+        } finally {
+            writeUsageMatrices(libraries);
+        }
+        LOGGER.info("Type solver pool: {}", TypeSolverRegistry.getInstance().statistics());
+        LOGGER.info("Peak of syntax trees retained at the same time: {}", JavaParserUtil.peakRetainedAsts());
+        TieredMethodResolver.Statistics tieredResolution = TieredMethodResolver.totalStatistics().since(tieredResolutionBefore);
+        LOGGER.info("Tiered resolution: {} audited decisions disagreed with the symbol solver ({})", tieredResolution.disagreements(), tieredResolution);
 
-        return sortByUsagesHighToLow(methodUsages);
+        Map<Project, List<MethodUsages>> mostUsedMethods = new LinkedHashMap<>();
+        for (Library library : libraries) {
+            synchronized (library.methodUsages()) {
+                mostUsedMethods.put(library.provider(), library.signatureTable().toMethodUsages(library.methodUsages()));
+            }
+        }
+        return mostUsedMethods;
     }
 
     @Override
@@ -48,64 +124,174 @@ public class JavaParserProjectQuery implements ProjectQuery {
         throw new UnsupportedOperationException();
     }
 
-    private static List<MethodUsages> sortByUsagesHighToLow(Map<String, Long> methodUsages) {
-        return methodUsages
-                .entrySet()
+    /**
+     * Writes the rows computed so far, so the dependents that were analysed before an interrupted run do not have to
+     * be parsed again
+     */
+    private static void writeUsageMatrices(List<Library> libraries) {
+        libraries.forEach(library -> library.usageMatrix().write(UsageMatrix.location(libraryId(library.provider()))));
+    }
+
+    /**
+     * Creates the filter that skips the files of a dependent that can not call any of the public methods. The package
+     * prefixes are derived from the signatures, so nested types only add their outer type as prefix.
+     */
+    private static SourcePrefilter createPrefilter(List<Library> libraries) {
+        if (!ApplicationConfiguration.sourcePrefilter()) {
+            return SourcePrefilter.acceptAll();
+        }
+
+        Set<String> packagePrefixes = libraries
                 .stream()
-                .map(e -> new MethodUsages(e.getKey(), e.getValue()))
-                .sorted(Comparator.comparingLong(MethodUsages::usages).reversed())
-                .toList();
+                .flatMap(library -> library.signatureTable().signatures().stream())
+                .map(signature -> signature.substring(0, signature.indexOf("(")))
+                .filter(method -> method.lastIndexOf(".") > 0)
+                .map(method -> method.substring(0, method.lastIndexOf(".")))
+                .filter(type -> type.lastIndexOf(".") > 0)
+                .map(type -> type.substring(0, type.lastIndexOf(".")))
+                .collect(Collectors.toCollection(TreeSet::new));
+        packagePrefixes.removeIf(prefix -> packagePrefixes.stream().anyMatch(other -> prefix.startsWith(other + ".")));
+
+        return SourcePrefilter.of(methodNames(libraries), packagePrefixes, ApplicationConfiguration.prefilterRequiresPackage());
     }
 
-    private void computeMethodUsagesForProject(Project project, Set<String> allMethodNames, Map<String, Long> methodUsages) {
-        try {
-            ProjectCoordinate projectCoordinates = project.getProjectVersion().coordinate();
-            if (methodCallsCacheService.isCached(projectCoordinates.toString())) {
-                LOGGER.info("Project '{}' method calls are cached!", projectCoordinates);
-                Optional<ProjectMethodCallsResult> optional = methodCallsCacheService.get(projectCoordinates.toString());
-
-                optional.ifPresentOrElse(
-                        result -> {
-                            List<MethodUsages> methodCalls = result.methodCalls;
-                            for (MethodUsages methodCall : methodCalls) {
-                                if (methodUsages.containsKey(methodCall.fullyQualifiedSignature())) {
-                                    methodUsages.merge(methodCall.fullyQualifiedSignature(), methodCall.usages(), Long::sum);
-                                }
-                            }
-                        },
-                        () -> computeAllMethodCalls(project, allMethodNames, methodUsages, projectCoordinates));
+    /**
+     * Analyses the dependents one after another, or with the configured number of dependents at the same time. The
+     * files of every dependent are parsed in parallel on the shared parser pool either way.
+     */
+    private static <T> void forEachDependent(Collection<T> users, Consumer<T> analysis) {
+        ConcurrencyUtil.forEach(users, ApplicationConfiguration.dependentThreads(), analysis);
+    }
+
+    /**
+     * Only computes the calls to the libraries whose usage matrix does not contain the project yet. The rows of the
+     * project are looked up by its resolution fingerprint too, so the classpath of the project is resolved either way.
+     *
+     * @return the number of calls of the project per signature id, per library in the same order
+     */
+    private List<long[]> computeMethodUsagesForProject(Project project, List<Library> libraries, SourcePrefilter prefilter) {
+        ProjectSources projectSources = JavaParserUtil.getProjectSources(project, librarySnapshots(project, libraries));
+        Optional<String> dependent = dependentVersion(project).map(version -> version + "#" + resolutionFingerprint(projectSources));
+        if (dependent.isEmpty()) {
+            return computeAllMethodCalls(project, projectSources, libraries, prefilter);
+        }
+
+        long[][] methodCalls = new long[libraries.size()][];
+        List<Library> uncachedLibraries = new ArrayList<>();
+        for (int i = 0; i < libraries.size(); i++) {
+            Optional<long[]> cachedMethodCalls = libraries.get(i).usageMatrix().row(dependent.get());
+            if (cachedMethodCalls.isPresent()) {
+                methodCalls[i] = cachedMethodCalls.get();
             } else {
-                computeAllMethodCalls(project, allMethodNames, methodUsages, projectCoordinates);
+                uncachedLibraries.add(libraries.get(i));
             }
-        } catch (Exception e) {
-            computeAllMethodCalls(project, allMethodNames, methodUsages, null);
         }
+        if (uncachedLibraries.isEmpty()) {
+            LOGGER.info("Project '{}' method calls are cached!", dependent.get());
+            return Arrays.asList(methodCalls);
+        }
+
+        List<long[]> computedMethodCalls = computeAllMethodCalls(project, projectSources, uncachedLibraries, prefilter);
+        for (int i = 0; i < uncachedLibraries.size(); i++) {
+            Library library = uncachedLibraries.get(i);
+            library.usageMatrix().put(dependent.get(), computedMethodCalls.get(i));
+            methodCalls[libraries.indexOf(library)] = computedMethodCalls.get(i);
+        }
+        return Arrays.asList(methodCalls);
     }
 
-    private void computeAllMethodCalls(Project project, Set<String> allMethodNames, Map<String, Long> methodUsages, ProjectCoordinate projectCoordinates) {
+    private List<long[]> computeAllMethodCalls(Project project, ProjectSources projectSources, List<Library> libraries, SourcePrefilter prefilter) {
         LOGGER.info("Computing all method calls for project {}", project.getId());
-        JavaParserUtil
-                .getAllMethodCalls(project)
-                .filter(m -> hasPotential(m.getNameAsString(), allMethodNames))
-                .forEach(m -> {
-                    try {
-                        ResolvedMethodDeclaration methodDeclaration = m.resolve();
-                        String fullyQualifiedSignature = methodDeclaration.getQualifiedSignature();
-                        if (methodUsages.containsKey(fullyQualifiedSignature)) {
-                            methodUsages.merge(fullyQualifiedSignature, 1L, Long::sum);
-                        }
-                    } catch (Exception e) {
-                        LOGGER.debug("Could not resolve method '{}'", m.getNameAsString(), e);
-                        methodUsages.merge("COULD NOT DETERMINE THE FULLY QUALIFIED SIGNATURE", 1L, Long::sum);
-                    }
-                });
+        List<SignatureTable> signatureTables = libraries.stream().map(Library::signatureTable).toList();
+        return fileExtractionService.methodCalls(projectSources, signatureTables, methodNames(libraries), prefilter);
+    }
 
-        if (projectCoordinates != null) {
-            methodCallsCacheService.write(new ProjectMethodCallsResult(projectCoordinates, methodUsages.entrySet().stream().map(e -> new MethodUsages(e.getKey(), e.getValue())).toList()));
+    /**
+     * The calls of a dependent at the same tree are counted differently when they are resolved differently, so a row
+     * is only reused when the tiered resolution, the library snapshots and the classpath are the same as well
+     */
+    private static String resolutionFingerprint(ProjectSources projectSources) {
+        return "%s:%s:%s".formatted(ApplicationConfiguration.tieredResolution(), ApplicationConfiguration.librarySnapshot(), projectSources.classpathFingerprint());
+    }
+
+    /**
+     * A snapshot is built from the analysed commit of its library, so it only replaces the copy of the library of
+     * dependents that declare the version of the library at that commit
+     */
+    private static List<File> librarySnapshots(Project dependent, List<Library> libraries) {
+        List<Library> librariesWithSnapshot = libraries.stream().filter(library -> library.librarySnapshot() != null && library.version() != null).toList();
+        if (librariesWithSnapshot.isEmpty()) {
+            return List.of();
+        }
+
+        Collection<Dependency> dependencies;
+        try {
+            dependencies = dependent.resolve();
+        } catch (Exception e) {
+            LOGGER.warn("Could not resolve the dependencies of project '{}', resolving the libraries against its own jars", dependent.getId(), e);
+            return List.of();
+        }
+        return librariesWithSnapshot.stream().filter(library -> dependencies.contains(library.version())).map(Library::librarySnapshot).toList();
+    }
+
+    private Library library(Project provider) {
+        LOGGER.info("Computing most used methods of project '{}'", provider.getId());
+        Set<String> allMethodNames = new HashSet<>();
+        SignatureTable signatureTable = createSignatureTableAndPopulateAllMethodsMap(provider, allMethodNames);
+        File librarySnapshot = ApplicationConfiguration.librarySnapshot() ? LibrarySnapshots.of(provider).map(Path::toFile).orElse(null) : null;
+        UsageMatrix usageMatrix = UsageMatrix.read(UsageMatrix.location(libraryId(provider)), signatureTable).orElseGet(() -> new UsageMatrix(signatureTable));
+
+        return new Library(provider, signatureTable, Set.copyOf(allMethodNames), librarySnapshot, libraryVersion(provider), usageMatrix, signatureTable.newCounters());
+    }
+
+    private static Set<String> methodNames(List<Library> libraries) {
+        Set<String> methodNames = new HashSet<>();
+        libraries.forEach(library -> methodNames.addAll(library.methodNames()));
+        return methodNames;
+    }
+
+    /**
+     * Clones without a coordinate or outside of git can not be compared, so they are told apart by their location
+     */
+    static String dependentId(Project dependent) {
+        return dependentVersion(dependent).orElseGet(() -> dependent.getLocalPath().getAbsoluteFile().toPath().normalize().toString());
+    }
+
+    /**
+     * The coordinate alone does not identify the sources of a dependent, because the version of a snapshot or of a
+     * pom that was not bumped stays the same across commits
+     *
+     * @return the coordinate of the dependent with the tree it is checked out at, empty when either is unknown
+     */
+    private static Optional<String> dependentVersion(Project dependent) {
+        String coordinate;
+        try {
+            coordinate = dependent.getProjectVersion().coordinate().toString();
+        } catch (Exception e) {
+            return Optional.empty();
         }
+        return SourceRootIndexCache.treeId(dependent.getLocalPath()).map(treeId -> coordinate + "@" + treeId);
     }
 
-    private Map<String, Long> createMethodUsageMapAndPopulateAllMethodsMap(Project project, Set<String> allMethodNames) {
+    private static Dependency libraryVersion(Project library) {
+        try {
+            ProjectCoordinate coordinate = library.getProjectVersion().coordinate();
+            return new Dependency(coordinate.groupId(), coordinate.artifactId(), coordinate.version());
+        } catch (Exception e) {
+            LOGGER.warn("Could not determine the version of library '{}'", library.getId(), e);
+            return null;
+        }
+    }
+
+    private static String libraryId(Project library) {
+        try {
+            return library.getProjectVersion().coordinate().toString();
+        } catch (Exception e) {
+            return library.getId();
+        }
+    }
+
+    private SignatureTable createSignatureTableAndPopulateAllMethodsMap(Project project, Set<String> allMethodNames) {
         try {
             ProjectCoordinate projectCoordinates = project.getProjectVersion().coordinate();
             if (publicMethodsCacheService.isCached(projectCoordinates.toString())) {
@@ -118,7 +304,7 @@ public class JavaParserProjectQuery implements ProjectQuery {
                                 String methodName = method.substring(0, method.indexOf("("));
                                 return methodName.substring(method.lastIndexOf(".") + 1);
                             }).toList());
-                            return result.methods.stream().collect(Collectors.toMap(m -> m, m -> 0L));
+                            return SignatureTable.of(result.methods);
                         })
                         .orElseGet(() -> computePublicMethodsAndCache(project, allMethodNames, projectCoordinates));
             } else {
@@ -129,35 +315,24 @@ public class JavaParserProjectQuery implements ProjectQuery {
         }
     }
 
-    private Map<String, Long> computePublicMethodsAndCache(Project project, Set<String> allMethodNames, ProjectCoordinate projectCoordinates) {
-        Map<String, Long> methodUsages = JavaParserUtil
-                .getAllPublicMethods(project)
-                .map(methodDeclaration -> {
-                    try {
-                        allMethodNames.add(methodDeclaration.getNameAsString());
-                        return methodDeclaration.resolve();
-                    } catch (Exception e) {
-                        LOGGER.debug("Could not resolve method '{}'", methodDeclaration.getNameAsString(), e);
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toConcurrentMap(m -> {
-                    try {
-                        return m.getQualifiedSignature();
-                    } catch (Exception e) {
-                        return "COULD NOT DETERMINE THE FULLY QUALIFIED SIGNATURE";
-                    }
-                }, m -> 0L, (a, b) -> a));
+    private SignatureTable computePublicMethodsAndCache(Project project, Set<String> allMethodNames, ProjectCoordinate projectCoordinates) {
+        PublicApi publicApi = publicApiExtractor.extract(project);
+        allMethodNames.addAll(publicApi.methodNames());
 
         if (projectCoordinates != null) {
-            publicMethodsCacheService.write(new ProjectPublicMethodsResult(projectCoordinates, methodUsages.keySet()));
+            publicMethodsCacheService.write(new ProjectPublicMethodsResult(projectCoordinates, publicApi.signatures()));
         }
-        return methodUsages;
+        return SignatureTable.of(publicApi.signatures());
     }
 
-    private boolean hasPotential(String methodName, Set<String> methodNames) {
-        return methodNames.contains(methodName);
+    /**
+     * A provider that is analysed, with the total calls of its dependents per signature id
+     *
+     * @param librarySnapshot the snapshot of the provider, null when the dependents resolve it against their own jars
+     * @param version         the version of the provider at the analysed commit, null when it is unknown
+     */
+    private record Library(Project provider, SignatureTable signatureTable, Set<String> methodNames,
+                           File librarySnapshot, Dependency version, UsageMatrix usageMatrix, long[] methodUsages) {
     }
 
     @JsonIgnoreProperties({"id"})
@@ -170,16 +345,6 @@ public class JavaParserProjectQuery implements ProjectQuery {
         }
     }
 
-    @JsonIgnoreProperties({"id"})
-    private record ProjectMethodCallsResult(ProjectCoordinate coordinate,
-                                            List<MethodUsages> methodCalls) implements Identifiable {
-
-        @Override
-        public String getId() {
-            return coordinate.toString();
-        }
-    }
-
     @JsonIgnoreProperties({"id"})
     private record MethodUsagesResult(ProjectCoordinate coordinate,
                                       List<MethodUsages> methodUsages) implements Identifiable {
@@ -2,4 +2,5 @@ package nl.jiankai.refactoring.core.project.query;
 
 
 public record MethodUsages(String fullyQualifiedSignature, long usages) {
+    public static final String UNRESOLVED_SIGNATURE = "COULD NOT DETERMINE THE FULLY QUALIFIED SIGNATURE";
 }
@@ -5,7 +5,9 @@ import nl.jiankai.refactoring.core.project.repository.Artifact;
 import nl.jiankai.refactoring.core.refactoring.javaparser.Dependency;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -21,5 +23,17 @@ public interface ProjectQuery {
      */
     List<MethodUsages> mostUsedMethods(Project provider, Collection<? extends Project> users);
 
+    /**
+     * Computes the most used public methods of several provider projects. Implementations may analyse a user project
+     * of multiple providers once for all of them, by default the providers are analysed one after another.
+     * @param usersByProvider the projects that use the methods per provider project
+     * @return an ordered list of methods from highest to lowest per provider project
+     */
+    default Map<Project, List<MethodUsages>> mostUsedMethods(Map<? extends Project, ? extends Collection<? extends Project>> usersByProvider) {
+        Map<Project, List<MethodUsages>> mostUsedMethods = new LinkedHashMap<>();
+        usersByProvider.forEach((provider, users) -> mostUsedMethods.put(provider, mostUsedMethods(provider, users)));
+        return mostUsedMethods;
+    }
+
     Optional<String> findLatestVersionWithDependency(Project project, Dependency dependency);
 }
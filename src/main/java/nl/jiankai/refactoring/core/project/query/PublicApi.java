@@ -0,0 +1,12 @@
+package nl.jiankai.refactoring.core.project.query;
+
+import java.util.Set;
+
+/**
+ * The public methods a project offers to its users
+ *
+ * @param methodNames the simple names of the public methods, also of the methods whose signature could not be determined
+ * @param signatures  the fully qualified signatures of the public methods
+ */
+public record PublicApi(Set<String> methodNames, Set<String> signatures) {
+}
@@ -0,0 +1,15 @@
+package nl.jiankai.refactoring.core.project.query;
+
+import nl.jiankai.refactoring.core.project.Project;
+
+/**
+ * Determines the public methods of a project
+ */
+public interface PublicApiExtractor {
+
+    /**
+     * @param project the project to determine the public methods of
+     * @return the public methods of the project
+     */
+    PublicApi extract(Project project);
+}
@@ -0,0 +1,111 @@
+package nl.jiankai.refactoring.core.project.query;
+
+import java.util.*;
+
+/**
+ * Assigns dense ids to the public method signatures of a single library, so the usages of the methods can be counted
+ * in a {@code long[]} indexed by id instead of in a map keyed by the long signature strings. The signatures are only
+ * turned back into {@link MethodUsages} at the output boundary.
+ * <p>
+ * The table always contains {@link MethodUsages#UNRESOLVED_SIGNATURE} for the calls that could not be resolved. A
+ * table is immutable, counters are not thread safe and should be owned by a single thread and added up afterwards.
+ */
+public final class SignatureTable {
+    public static final int UNKNOWN = -1;
+    private final String[] signatures;
+    private final Map<String, Integer> ids;
+    private final int unresolvedId;
+
+    private SignatureTable(String[] signatures) {
+        this.signatures = signatures;
+        this.ids = new HashMap<>(signatures.length * 4 / 3 + 1);
+        for (int id = 0; id < signatures.length; id++) {
+            ids.put(signatures[id], id);
+        }
+        this.unresolvedId = ids.get(MethodUsages.UNRESOLVED_SIGNATURE);
+    }
+
+    /**
+     * @param signatures the fully qualified signatures of the public methods of a library
+     * @return the table of the signatures, in their natural order followed by the unresolved signature
+     */
+    public static SignatureTable of(Collection<String> signatures) {
+        TreeSet<String> sortedSignatures = new TreeSet<>(signatures);
+        sortedSignatures.remove(MethodUsages.UNRESOLVED_SIGNATURE);
+        String[] table = sortedSignatures.toArray(new String[sortedSignatures.size() + 1]);
+        table[table.length - 1] = MethodUsages.UNRESOLVED_SIGNATURE;
+
+        return new SignatureTable(table);
+    }
+
+    /**
+     * @param signature a fully qualified signature
+     * @return the id of the signature, or {@link #UNKNOWN} when the signature is not part of the table
+     */
+    public int id(String signature) {
+        Integer id = ids.get(signature);
+        return id == null ? UNKNOWN : id;
+    }
+
+    public String signature(int id) {
+        return signatures[id];
+    }
+
+    public int unresolvedId() {
+        return unresolvedId;
+    }
+
+    /**
+     * @return the number of signatures including the unresolved signature
+     */
+    public int size() {
+        return signatures.length;
+    }
+
+    /**
+     * @return the signatures of the public methods, without the unresolved signature
+     */
+    public Set<String> signatures() {
+        Set<String> publicSignatures = new HashSet<>(Arrays.asList(signatures));
+        publicSignatures.remove(MethodUsages.UNRESOLVED_SIGNATURE);
+        return publicSignatures;
+    }
+
+    /**
+     * @return a zeroed counter per signature
+     */
+    public long[] newCounters() {
+        return new long[signatures.length];
+    }
+
+    /**
+     * Adds the calls of signatures that are part of the table to the counters, other signatures are ignored
+     *
+     * @param calls    the number of calls per fully qualified signature
+     * @param counters the counters of this table to add the calls to
+     */
+    public void count(Map<String, Long> calls, long[] counters) {
+        calls.forEach((signature, count) -> {
+            int id = id(signature);
+            if (id != UNKNOWN) {
+                counters[id] += count;
+            }
+        });
+    }
+
+    /**
+     * @param counters the counters of this table
+     * @return the usages of all signatures, the most used first, and of the unresolved calls if there were any
+     */
+    public List<MethodUsages> toMethodUsages(long[] counters) {
+        List<MethodUsages> methodUsages = new ArrayList<>(signatures.length);
+        for (int id = 0; id < signatures.length; id++) {
+            if (id != unresolvedId || counters[id] > 0) {
+                methodUsages.add(new MethodUsages(signatures[id], counters[id]));
+            }
+        }
+        methodUsages.sort(Comparator.comparingLong(MethodUsages::usages).reversed());
+
+        return methodUsages;
+    }
+}
@@ -0,0 +1,43 @@
+package nl.jiankai.refactoring.core.project.query;
+
+import nl.jiankai.refactoring.core.project.Project;
+import nl.jiankai.refactoring.core.project.extraction.DeclaredMethod;
+import nl.jiankai.refactoring.core.project.extraction.FileExtractionService;
+import nl.jiankai.refactoring.core.project.source.ProjectSources;
+import nl.jiankai.refactoring.util.JavaParserUtil;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Determines the public methods by parsing the sources of the project and resolving every public method declaration
+ */
+public class SourcePublicApiExtractor implements PublicApiExtractor {
+    private final FileExtractionService fileExtractionService;
+
+    public SourcePublicApiExtractor(FileExtractionService fileExtractionService) {
+        this.fileExtractionService = fileExtractionService;
+    }
+
+    @Override
+    public PublicApi extract(Project project) {
+        ProjectSources projectSources = JavaParserUtil.getProjectSources(project);
+        List<DeclaredMethod> publicMethods = fileExtractionService
+                .declaredMethods(projectSources, projectSources.javaFiles())
+                .stream()
+                .filter(DeclaredMethod::publicApi)
+                .toList();
+
+        Set<String> methodNames = publicMethods.stream().map(DeclaredMethod::name).collect(Collectors.toCollection(HashSet::new));
+        Set<String> signatures = publicMethods
+                .stream()
+                .map(DeclaredMethod::qualifiedSignature)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(HashSet::new));
+
+        return new PublicApi(methodNames, signatures);
+    }
+}
@@ -0,0 +1,194 @@
+package nl.jiankai.refactoring.core.project.query;
+
+import nl.jiankai.refactoring.configuration.CacheLocation;
+import nl.jiankai.refactoring.util.HashingUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * The calls of every dependent to the public methods of a single library, as a sparse matrix of dependents by
+ * signature id. Only the non-zero counts of a dependent are kept, so a dependent that was analysed before does not
+ * have to be parsed again.
+ * <p>
+ * On disk the matrix is stored column by column: the signatures, the dependents, the offset of every dependent in the
+ * entries, and then the signature ids and the counts of all entries as two contiguous arrays.
+ */
+public final class UsageMatrix {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UsageMatrix.class);
+    private static final int FORMAT = 1;
+    private final SignatureTable signatureTable;
+    private final Map<String, Row> rows = new TreeMap<>();
+
+    public UsageMatrix(SignatureTable signatureTable) {
+        this.signatureTable = signatureTable;
+    }
+
+    public SignatureTable signatureTable() {
+        return signatureTable;
+    }
+
+    /**
+     * @param libraryId the coordinate or id of the library
+     * @return the location of the usage matrix of the library
+     */
+    public static Path location(String libraryId) {
+        try {
+            return Path.of(CacheLocation.USAGE_MATRICES, HashingUtil.md5Hash(libraryId) + ".matrix");
+        } catch (NoSuchAlgorithmException e) {
+            LOGGER.warn("Couldn't hash the library id due to the hashing algorithm not being present", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param dependent the coordinate and checked out tree of a dependent, with the fingerprint of how its calls are resolved
+     * @return the calls of the dependent per signature id, empty when the dependent is not part of the matrix
+     */
+    public synchronized Optional<long[]> row(String dependent) {
+        Row row = rows.get(dependent);
+        if (row == null) {
+            return Optional.empty();
+        }
+
+        long[] counters = signatureTable.newCounters();
+        for (int i = 0; i < row.signatureIds().length; i++) {
+            counters[row.signatureIds()[i]] = row.counts()[i];
+        }
+        return Optional.of(counters);
+    }
+
+    /**
+     * @param dependent the coordinate and checked out tree of a dependent, with the fingerprint of how its calls are resolved
+     * @param counters  the calls of the dependent per signature id
+     */
+    public synchronized void put(String dependent, long[] counters) {
+        int entries = 0;
+        for (long count : counters) {
+            if (count != 0) {
+                entries++;
+            }
+        }
+
+        int[] signatureIds = new int[entries];
+        long[] counts = new long[entries];
+        int entry = 0;
+        for (int id = 0; id < counters.length; id++) {
+            if (counters[id] != 0) {
+                signatureIds[entry] = id;
+                counts[entry++] = counters[id];
+            }
+        }
+        rows.put(dependent, new Row(signatureIds, counts));
+    }
+
+    /**
+     * Reads the matrix of a library, as long as it was computed for the same public methods
+     *
+     * @param file           the location of the matrix
+     * @param signatureTable the current public methods of the library
+     * @return the matrix, empty when it does not exist, can not be read or was computed for other public methods
+     */
+    public static Optional<UsageMatrix> read(Path file, SignatureTable signatureTable) {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != FORMAT) {
+                return Optional.empty();
+            }
+
+            int signatures = input.readInt();
+            if (signatures != signatureTable.size()) {
+                return Optional.empty();
+            }
+            for (int id = 0; id < signatures; id++) {
+                if (!input.readUTF().equals(signatureTable.signature(id))) {
+                    return Optional.empty();
+                }
+            }
+
+            String[] dependents = new String[input.readInt()];
+            for (int i = 0; i < dependents.length; i++) {
+                dependents[i] = input.readUTF();
+            }
+            int[] offsets = new int[dependents.length + 1];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = input.readInt();
+            }
+            int entries = offsets[dependents.length];
+            int[] signatureIds = new int[entries];
+            for (int i = 0; i < entries; i++) {
+                signatureIds[i] = input.readInt();
+            }
+            long[] counts = new long[entries];
+            for (int i = 0; i < entries; i++) {
+                counts[i] = input.readLong();
+            }
+
+            UsageMatrix usageMatrix = new UsageMatrix(signatureTable);
+            for (int i = 0; i < dependents.length; i++) {
+                usageMatrix.rows.put(dependents[i], new Row(
+                        Arrays.copyOfRange(signatureIds, offsets[i], offsets[i + 1]),
+                        Arrays.copyOfRange(counts, offsets[i], offsets[i + 1])));
+            }
+            return Optional.of(usageMatrix);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not read usage matrix '{}'", file, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the matrix to a temporary file first, so a matrix on disk is always complete
+     *
+     * @param file the location of the matrix
+     */
+    public synchronized void write(Path file) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                output.writeInt(FORMAT);
+                output.writeInt(signatureTable.size());
+                for (int id = 0; id < signatureTable.size(); id++) {
+                    output.writeUTF(signatureTable.signature(id));
+                }
+
+                output.writeInt(rows.size());
+                for (String dependent : rows.keySet()) {
+                    output.writeUTF(dependent);
+                }
+                int offset = 0;
+                output.writeInt(offset);
+                for (Row row : rows.values()) {
+                    offset += row.signatureIds().length;
+                    output.writeInt(offset);
+                }
+                for (Row row : rows.values()) {
+                    for (int signatureId : row.signatureIds()) {
+                        output.writeInt(signatureId);
+                    }
+                }
+                for (Row row : rows.values()) {
+                    for (long count : row.counts()) {
+                        output.writeLong(count);
+                    }
+                }
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write usage matrix '{}'", file, e);
+        }
+    }
+
+    private record Row(int[] signatureIds, long[] counts) {
+    }
+}
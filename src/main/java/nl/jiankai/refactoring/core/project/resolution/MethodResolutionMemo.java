@@ -0,0 +1,201 @@
+package nl.jiankai.refactoring.core.project.resolution;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.resolution.types.ResolvedType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers which method a call resolved to, keyed on the type of its scope, the method name and the types of its
+ * arguments. Calls with the same shape resolve to the same method, so only the types of the scope and arguments have
+ * to be calculated for repeated calls instead of going through the overload resolution of the symbol solver again.
+ * <p>
+ * Calls without a scope depend on the type they are made from and on the static imports of their file, so they are
+ * only shared between calls made from within the same type declaration. Calls with a lambda or method reference as
+ * argument are always resolved directly, because the type of such an argument depends on the method it is passed to.
+ * The same goes for calls of which the scope or an argument is typed with a type variable, because a type variable is
+ * described by its name alone and so can not be told apart from a type variable with the same name in another type.
+ * Failed resolutions are remembered as well, except for resolutions that were aborted because they exceeded their
+ * {@link ResolutionBudget}. A memo belongs to a single project.
+ */
+public final class MethodResolutionMemo {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodResolutionMemo.class);
+    private static final String UNRESOLVED = "";
+    private final Map<String, String> signatures;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypasses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public MethodResolutionMemo(int maximumSize) {
+        this.signatures = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                if (size() > maximumSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param methodCall the call to resolve
+     * @return the qualified signature of the called method, empty when the call could not be resolved
+     */
+    public Optional<String> resolve(MethodCallExpr methodCall) {
+        return ResolutionBudget.forCall(() -> resolveWithinBudget(methodCall), Optional.empty());
+    }
+
+    private Optional<String> resolveWithinBudget(MethodCallExpr methodCall) {
+        Optional<String> key = key(methodCall);
+        if (key.isEmpty()) {
+            bypasses.incrementAndGet();
+            return resolveDirectly(methodCall);
+        }
+
+        String signature;
+        synchronized (signatures) {
+            signature = signatures.get(key.get());
+        }
+        if (signature != null) {
+            hits.incrementAndGet();
+            return signature.equals(UNRESOLVED) ? Optional.empty() : Optional.of(signature);
+        }
+
+        misses.incrementAndGet();
+        Optional<String> resolved = resolveDirectly(methodCall);
+        synchronized (signatures) {
+            signatures.put(key.get(), resolved.orElse(UNRESOLVED));
+        }
+        return resolved;
+    }
+
+    public Statistics statistics() {
+        synchronized (signatures) {
+            return new Statistics(hits.get(), misses.get(), bypasses.get(), evictions.get(), signatures.size());
+        }
+    }
+
+    private Optional<String> resolveDirectly(MethodCallExpr methodCall) {
+        try {
+            return Optional.of(methodCall.resolve().getQualifiedSignature());
+        } catch (ResolutionBudgetExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.debug("Could not resolve method '{}'", methodCall.getNameAsString(), e);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<String> key(MethodCallExpr methodCall) {
+        try {
+            Optional<Expression> scope = methodCall.getScope();
+            Optional<String> scopeKey = scope.isPresent() ? scopeKey(scope.get()) : enclosingTypeKey(methodCall);
+            if (scopeKey.isEmpty()) {
+                return Optional.empty();
+            }
+
+            StringJoiner key = new StringJoiner(",", scopeKey.get() + "#" + methodCall.getNameAsString() + "(", ")");
+            for (Expression argument : methodCall.getArguments()) {
+                if (argument.isLambdaExpr() || argument.isMethodReferenceExpr()) {
+                    return Optional.empty();
+                }
+                Optional<String> argumentKey = typeKey(argument.calculateResolvedType());
+                if (argumentKey.isEmpty()) {
+                    return Optional.empty();
+                }
+                key.add(argumentKey.get());
+            }
+            return Optional.of(key.toString());
+        } catch (ResolutionBudgetExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * A scope is either an expression or the name of a type for static calls. A type name can only be recognised by
+     * the failure to calculate its type, so its key falls back to the name as written in the declaring type.
+     */
+    private Optional<String> scopeKey(Expression scope) {
+        if (scope.isSuperExpr()) {
+            return enclosingTypeKey(scope).map(type -> "super:" + type);
+        }
+
+        ResolvedType type;
+        try {
+            type = scope.calculateResolvedType();
+        } catch (ResolutionBudgetExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            if (scope.isNameExpr() || scope.isFieldAccessExpr()) {
+                return enclosingTypeKey(scope).map(enclosingType -> "static:" + enclosingType + ":" + scope);
+            }
+            throw e;
+        }
+        return typeKey(type);
+    }
+
+    /**
+     * @return the description of the type, empty when the type is or contains a type variable
+     */
+    private static Optional<String> typeKey(ResolvedType type) {
+        return containsTypeVariable(type) ? Optional.empty() : Optional.of(type.describe());
+    }
+
+    static boolean containsTypeVariable(ResolvedType type) {
+        if (type.isTypeVariable()) {
+            return true;
+        }
+        if (type.isArray()) {
+            return containsTypeVariable(type.asArrayType().getComponentType());
+        }
+        if (type.isWildcard()) {
+            return type.asWildcard().isBounded() && containsTypeVariable(type.asWildcard().getBoundedType());
+        }
+        if (type.isReferenceType()) {
+            return type.asReferenceType().typeParametersValues().stream().anyMatch(MethodResolutionMemo::containsTypeVariable);
+        }
+        return false;
+    }
+
+    /**
+     * Local and anonymous classes have no unique name, calls made from within them are not memoized
+     */
+    private Optional<String> enclosingTypeKey(Node node) {
+        Optional<Node> parent = node.getParentNode();
+        while (parent.isPresent()) {
+            Node current = parent.get();
+            if (current instanceof ObjectCreationExpr objectCreation && objectCreation.getAnonymousClassBody().isPresent()) {
+                return Optional.empty();
+            }
+            if (current instanceof Statement statement && (statement.isLocalClassDeclarationStmt() || statement.isLocalRecordDeclarationStmt())) {
+                return Optional.empty();
+            }
+            if (current instanceof TypeDeclaration<?> typeDeclaration && !(typeDeclaration.getParentNode().orElse(null) instanceof Statement)) {
+                return typeDeclaration.getFullyQualifiedName();
+            }
+            parent = current.getParentNode();
+        }
+
+        return Optional.empty();
+    }
+
+    public record Statistics(long hits, long misses, long bypasses, long evictions, int size) {
+        @Override
+        public String toString() {
+            long lookups = hits + misses;
+            return "%s hits, %s misses (%.1f%% hit rate), %s resolved without memo, %s evictions, %s entries"
+                    .formatted(hits, misses, lookups == 0 ? 0.0 : hits * 100.0 / lookups, bypasses, evictions, size);
+        }
+    }
+}
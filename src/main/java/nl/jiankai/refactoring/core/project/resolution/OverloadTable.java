@@ -0,0 +1,134 @@
+package nl.jiankai.refactoring.core.project.resolution;
+
+import java.util.*;
+
+/**
+ * The methods of a library grouped by their simple name, derived from their qualified signatures in the format of
+ * {@code ResolvedMethodDeclaration#getQualifiedSignature()}. Used to decide which method a call refers to from the
+ * type it is called on and its number of arguments alone.
+ */
+public final class OverloadTable {
+    private static final String OBJECT = "java.lang.Object";
+    private static final Set<String> OBJECT_METHODS = Set.of("clone", "equals", "finalize", "getClass", "hashCode", "notify", "notifyAll", "toString", "wait");
+    private static final OverloadTable EMPTY = new OverloadTable(Map.of(), Set.of());
+    private final Map<String, List<Overload>> overloadsByName;
+    private final Set<String> types;
+
+    private OverloadTable(Map<String, List<Overload>> overloadsByName, Set<String> types) {
+        this.overloadsByName = overloadsByName;
+        this.types = types;
+    }
+
+    /**
+     * @param signatures the qualified signatures of the methods of a library, signatures that can not be parsed are ignored
+     * @return the overloads of the signatures
+     */
+    public static OverloadTable of(Collection<String> signatures) {
+        Map<String, List<Overload>> overloadsByName = new HashMap<>();
+        Set<String> types = new HashSet<>();
+        for (String signature : signatures) {
+            int parametersStart = signature.indexOf('(');
+            int nameStart = parametersStart < 0 ? -1 : signature.lastIndexOf('.', parametersStart);
+            if (nameStart <= 0 || !signature.endsWith(")")) {
+                continue;
+            }
+
+            String type = signature.substring(0, nameStart);
+            String parameters = signature.substring(parametersStart + 1, signature.length() - 1);
+            overloadsByName
+                    .computeIfAbsent(signature.substring(nameStart + 1, parametersStart), name -> new ArrayList<>())
+                    .add(new Overload(signature, type, parameters, arity(parameters), parameters.endsWith("...")));
+            types.add(type);
+        }
+
+        return new OverloadTable(overloadsByName, types);
+    }
+
+    public static OverloadTable empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return overloadsByName.isEmpty();
+    }
+
+    /**
+     * @param type a qualified type name
+     * @return whether the library declares methods in the type
+     */
+    public boolean declaresMethodsIn(String type) {
+        return types.contains(type);
+    }
+
+    /**
+     * @param type a qualified type name
+     * @param name the simple name of a method
+     * @return whether the type declares a method with the name
+     */
+    public boolean declares(String type, String name) {
+        return overloadsByName.getOrDefault(name, List.of()).stream().anyMatch(overload -> overload.type().equals(type));
+    }
+
+    /**
+     * Finds the only method of the type that accepts the number of arguments. Methods of other types with the same
+     * name and a matching number of arguments may be inherited by the type, so they are only allowed when they have
+     * the same parameters, in which case the method of the type overrides them.
+     * <p>
+     * Overloads inherited from types outside of the library are unknown, so a method is only decided when every super
+     * type of the type declares methods in the library. The methods of {@code Object} are never decided.
+     *
+     * @param type       the qualified name of the type the method is called on
+     * @param supertypes the qualified names of all super types of the type
+     * @param name       the simple name of the called method
+     * @param arguments  the number of arguments of the call
+     * @return the signature of the method, empty when no or more than one method might be called
+     */
+    public Optional<String> unambiguous(String type, Collection<String> supertypes, String name, int arguments) {
+        if (OBJECT_METHODS.contains(name) || !supertypes.stream().allMatch(supertype -> supertype.equals(OBJECT) || declaresMethodsIn(supertype))) {
+            return Optional.empty();
+        }
+
+        List<Overload> applicable = overloadsByName
+                .getOrDefault(name, List.of())
+                .stream()
+                .filter(overload -> overload.accepts(arguments))
+                .toList();
+        List<Overload> declared = applicable.stream().filter(overload -> overload.type().equals(type)).toList();
+        if (declared.size() != 1) {
+            return Optional.empty();
+        }
+
+        Overload candidate = declared.get(0);
+        return applicable.stream().allMatch(overload -> overload.parameters().equals(candidate.parameters()))
+                ? Optional.of(candidate.signature())
+                : Optional.empty();
+    }
+
+    /**
+     * Generic parameter types contain commas themselves, so only the commas outside of type arguments separate parameters
+     */
+    private static int arity(String parameters) {
+        if (parameters.isBlank()) {
+            return 0;
+        }
+
+        int arity = 1;
+        int depth = 0;
+        for (char character : parameters.toCharArray()) {
+            switch (character) {
+                case '<' -> depth++;
+                case '>' -> depth--;
+                case ',' -> arity += depth == 0 ? 1 : 0;
+                default -> {
+                }
+            }
+        }
+        return arity;
+    }
+
+    private record Overload(String signature, String type, String parameters, int arity, boolean varargs) {
+        boolean accepts(int arguments) {
+            return varargs ? arguments >= arity - 1 : arguments == arity;
+        }
+    }
+}
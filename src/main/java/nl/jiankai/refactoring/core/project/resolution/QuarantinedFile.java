@@ -0,0 +1,22 @@
+package nl.jiankai.refactoring.core.project.resolution;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import nl.jiankai.refactoring.core.storage.api.Identifiable;
+
+/**
+ * A source file whose resolution exceeded its budget
+ *
+ * @param blobId      the git blob id of the file content
+ * @param file        the location of the file when it last exceeded its budget
+ * @param budgetMs    the file budget that was exceeded
+ * @param overruns    the number of times the file exceeded the budget
+ * @param lastOverrun the time in milliseconds since the epoch the file last exceeded the budget
+ */
+@JsonIgnoreProperties({"id"})
+public record QuarantinedFile(String blobId, String file, long budgetMs, int overruns, long lastOverrun) implements Identifiable {
+
+    @Override
+    public String getId() {
+        return blobId;
+    }
+}
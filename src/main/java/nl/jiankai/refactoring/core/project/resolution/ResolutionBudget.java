@@ -0,0 +1,184 @@
+package nl.jiankai.refactoring.core.project.resolution;
+
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Limits how long the symbol solver may spend on a single file and on a single call within that file. The symbol
+ * solver can not be interrupted, so a watchdog thread marks the threads that ran out of budget and the type solvers of
+ * a project abort the resolution at the next type lookup by calling {@link #checkpoint()}. Once marked, every further
+ * lookup fails until the file or call is left, so the abort also gets through code that swallows the first failure.
+ * <p>
+ * A budget of 0 disables the limit of that scope.
+ */
+public final class ResolutionBudget {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolutionBudget.class);
+    private static final Map<Thread, Budget> ACTIVE_BUDGETS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Budget> CURRENT_BUDGET = new ThreadLocal<>();
+    private static final LongAdder SUPERVISED_FILES = new LongAdder();
+    private static final LongAdder FILE_OVERRUNS = new LongAdder();
+    private static final LongAdder CALL_OVERRUNS = new LongAdder();
+    private static ScheduledExecutorService watchdog;
+
+    private ResolutionBudget() {
+    }
+
+    /**
+     * Runs the parsing and resolution of a file within the file budget. Nested files run within the budget of the
+     * outermost file.
+     *
+     * @param file the file that is resolved
+     * @param work the parsing and resolution of the file
+     * @return the result of the work
+     * @throws ResolutionBudgetExceededException when the file ran out of budget
+     */
+    public static <R> R forFile(Path file, Supplier<R> work) {
+        long fileBudgetMs = ApplicationConfiguration.resolutionFileBudgetMs();
+        long callBudgetMs = ApplicationConfiguration.resolutionCallBudgetMs();
+        if (CURRENT_BUDGET.get() != null || fileBudgetMs <= 0 && callBudgetMs <= 0) {
+            return work.get();
+        }
+
+        startWatchdog(fileBudgetMs, callBudgetMs);
+        Budget budget = new Budget(file, fileBudgetMs, callBudgetMs);
+        SUPERVISED_FILES.increment();
+        CURRENT_BUDGET.set(budget);
+        ACTIVE_BUDGETS.put(Thread.currentThread(), budget);
+        try {
+            return work.get();
+        } catch (ResolutionBudgetExceededException e) {
+            if (e.getScope() == ResolutionBudgetExceededException.Scope.FILE) {
+                FILE_OVERRUNS.increment();
+            }
+            throw e;
+        } finally {
+            ACTIVE_BUDGETS.remove(Thread.currentThread());
+            CURRENT_BUDGET.remove();
+        }
+    }
+
+    /**
+     * Runs the resolution of a single call within the call budget of the current file. Outside a file budget the
+     * call is resolved without a limit.
+     *
+     * @param work    the resolution of the call
+     * @param overrun the result when the call ran out of budget
+     * @return the result of the work, or the overrun result when the call ran out of budget
+     * @throws ResolutionBudgetExceededException when the file ran out of budget
+     */
+    public static <R> R forCall(Supplier<R> work, R overrun) {
+        Budget budget = CURRENT_BUDGET.get();
+        if (budget == null || budget.callBudgetMs <= 0 || budget.callDeadline != 0) {
+            return work.get();
+        }
+
+        budget.callDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget.callBudgetMs);
+        try {
+            return work.get();
+        } catch (ResolutionBudgetExceededException e) {
+            if (e.getScope() == ResolutionBudgetExceededException.Scope.FILE) {
+                throw e;
+            }
+            CALL_OVERRUNS.increment();
+            LOGGER.debug("Aborted the resolution of a call in file '{}'", budget.file, e);
+            return overrun;
+        } finally {
+            budget.callDeadline = 0;
+        }
+    }
+
+    /**
+     * Aborts the resolution on the current thread when the watchdog marked it as out of budget
+     *
+     * @throws ResolutionBudgetExceededException when the file or the current call ran out of budget
+     */
+    public static void checkpoint() {
+        Budget budget = CURRENT_BUDGET.get();
+        if (budget == null || !budget.expired) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (budget.fileDeadline != 0 && now - budget.fileDeadline > 0) {
+            throw new ResolutionBudgetExceededException(ResolutionBudgetExceededException.Scope.FILE, budget.file, budget.fileBudgetMs);
+        }
+        long callDeadline = budget.callDeadline;
+        if (callDeadline != 0 && now - callDeadline > 0) {
+            throw new ResolutionBudgetExceededException(ResolutionBudgetExceededException.Scope.CALL, budget.file, budget.callBudgetMs);
+        }
+        // marked for a call that has finished in the meantime
+        budget.expired = false;
+    }
+
+    public static Statistics statistics() {
+        return new Statistics(SUPERVISED_FILES.sum(), FILE_OVERRUNS.sum(), CALL_OVERRUNS.sum());
+    }
+
+    private static synchronized void startWatchdog(long fileBudgetMs, long callBudgetMs) {
+        if (watchdog != null) {
+            return;
+        }
+
+        long smallestBudgetMs = callBudgetMs <= 0 ? fileBudgetMs : fileBudgetMs <= 0 ? callBudgetMs : Math.min(fileBudgetMs, callBudgetMs);
+        long intervalMs = Math.max(10, Math.min(1000, smallestBudgetMs / 10));
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "resolution-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleAtFixedRate(ResolutionBudget::inspect, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void inspect() {
+        long now = System.nanoTime();
+        ACTIVE_BUDGETS.forEach((thread, budget) -> {
+            long callDeadline = budget.callDeadline;
+            boolean fileExpired = budget.fileDeadline != 0 && now - budget.fileDeadline > 0;
+            if (fileExpired || callDeadline != 0 && now - callDeadline > 0) {
+                budget.expired = true;
+            }
+            // the symbol solver can spend a long time without looking up any type
+            if (fileExpired && !budget.reportedUnresponsive && now - budget.fileDeadline > TimeUnit.MILLISECONDS.toNanos(budget.fileBudgetMs)) {
+                budget.reportedUnresponsive = true;
+                LOGGER.warn("Thread '{}' has been resolving file '{}' for twice its budget without reaching a checkpoint", thread.getName(), budget.file);
+            }
+        });
+    }
+
+    private static final class Budget {
+        private final Path file;
+        private final long fileBudgetMs;
+        private final long callBudgetMs;
+        private final long fileDeadline;
+        private volatile long callDeadline;
+        private volatile boolean expired;
+        private volatile boolean reportedUnresponsive;
+
+        private Budget(Path file, long fileBudgetMs, long callBudgetMs) {
+            this.file = file;
+            this.fileBudgetMs = fileBudgetMs;
+            this.callBudgetMs = callBudgetMs;
+            // 0 means no deadline, a deadline that happens to be 0 is moved by a nanosecond
+            long fileDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fileBudgetMs);
+            this.fileDeadline = fileBudgetMs <= 0 ? 0 : fileDeadline == 0 ? 1 : fileDeadline;
+        }
+    }
+
+    public record Statistics(long supervisedFiles, long fileOverruns, long callOverruns) {
+        @Override
+        public String toString() {
+            return "%s files resolved within a budget, %s files and %s calls aborted after exceeding their budget"
+                    .formatted(supervisedFiles, fileOverruns, callOverruns);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package nl.jiankai.refactoring.core.project.resolution;
+
+import java.nio.file.Path;
+
+/**
+ * Thrown from within the symbol solver when the resolution of a file or a single call took longer than its budget
+ */
+public class ResolutionBudgetExceededException extends RuntimeException {
+    private final Scope scope;
+    private final Path file;
+    private final long budgetMs;
+
+    public ResolutionBudgetExceededException(Scope scope, Path file, long budgetMs) {
+        super("The resolution of %s in file '%s' exceeded its budget of %s ms".formatted(scope == Scope.FILE ? "all calls" : "a call", file, budgetMs));
+        this.scope = scope;
+        this.file = file;
+        this.budgetMs = budgetMs;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getBudgetMs() {
+        return budgetMs;
+    }
+
+    public enum Scope {
+        FILE, CALL
+    }
+}
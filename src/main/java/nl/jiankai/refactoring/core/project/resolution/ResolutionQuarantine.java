@@ -0,0 +1,124 @@
+package nl.jiankai.refactoring.core.project.resolution;
+
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
+import nl.jiankai.refactoring.configuration.CacheLocation;
+import nl.jiankai.refactoring.core.storage.api.CacheService;
+import nl.jiankai.refactoring.core.storage.filestorage.MultiFileCacheService;
+import nl.jiankai.refactoring.serialisation.JacksonSerializationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the files whose resolution exceeded the file budget, by the git blob id of their content, so later runs
+ * skip them before they are parsed once they exceeded it {@link ApplicationConfiguration#resolutionQuarantineOverruns()}
+ * times. A single overrun may be caused by a busy machine rather than by the file. The same content in another project
+ * or at another commit is skipped as well. A file is tried again once the file budget is raised above the budget it
+ * exceeded, or once its quarantine expired.
+ */
+public final class ResolutionQuarantine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolutionQuarantine.class);
+    private static final ResolutionQuarantine INSTANCE = new ResolutionQuarantine();
+    private final CacheService<QuarantinedFile> quarantinedFiles = new MultiFileCacheService<>(CacheLocation.RESOLUTION_QUARANTINE, new JacksonSerializationService(), QuarantinedFile.class);
+    private final List<QuarantinedFile> quarantinedThisRun = new CopyOnWriteArrayList<>();
+    private final Map<String, Path> skippedThisRun = new ConcurrentHashMap<>();
+    private final LongAdder skippedFiles = new LongAdder();
+
+    private ResolutionQuarantine() {
+    }
+
+    public static ResolutionQuarantine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param file   the location of the file
+     * @param blobId the git blob id of the content of the file
+     * @return whether the file should be skipped instead of parsed, counted as skipped when it should
+     */
+    public boolean skip(Path file, String blobId) {
+        if (!ApplicationConfiguration.resolutionQuarantine() || !quarantinedFiles.isCached(blobId)) {
+            return false;
+        }
+
+        Optional<QuarantinedFile> quarantinedFile = quarantinedFiles
+                .get(blobId)
+                .filter(quarantined -> quarantined.overruns() >= ApplicationConfiguration.resolutionQuarantineOverruns())
+                .filter(quarantined -> ApplicationConfiguration.resolutionFileBudgetMs() <= quarantined.budgetMs())
+                .filter(ResolutionQuarantine::isActive);
+        if (quarantinedFile.isEmpty()) {
+            return false;
+        }
+
+        skippedFiles.increment();
+        if (skippedThisRun.putIfAbsent(blobId, file) == null) {
+            LOGGER.info("Skipping file '{}' ({}), it exceeded {} ms {} times", file, blobId, quarantinedFile.get().budgetMs(), quarantinedFile.get().overruns());
+        }
+        return true;
+    }
+
+    /**
+     * Quarantines a file that exceeded its file budget. Files of which only a single call exceeded its budget are not
+     * quarantined, because the rest of the file has been resolved.
+     *
+     * @param blobId the git blob id of the content of the file
+     * @param e      the exceeded budget
+     */
+    public synchronized void quarantine(String blobId, ResolutionBudgetExceededException e) {
+        if (e.getScope() != ResolutionBudgetExceededException.Scope.FILE || !ApplicationConfiguration.resolutionQuarantine()) {
+            LOGGER.warn(e.getMessage());
+            return;
+        }
+
+        // earlier overruns only count when they exceeded the same budget and have not expired yet
+        int overruns = quarantinedFiles
+                .get(blobId)
+                .filter(quarantined -> quarantined.budgetMs() == e.getBudgetMs())
+                .filter(ResolutionQuarantine::isActive)
+                .map(QuarantinedFile::overruns)
+                .orElse(0) + 1;
+        QuarantinedFile quarantinedFile = new QuarantinedFile(blobId, e.getFile().toString(), e.getBudgetMs(), overruns, System.currentTimeMillis());
+        quarantinedFiles.write(quarantinedFile);
+        if (overruns >= ApplicationConfiguration.resolutionQuarantineOverruns()) {
+            LOGGER.warn("{}, the file is quarantined after {} overruns", e.getMessage(), overruns);
+            quarantinedThisRun.add(quarantinedFile);
+        } else {
+            LOGGER.warn("{}, the file is quarantined when it exceeds its budget {} more times", e.getMessage(), ApplicationConfiguration.resolutionQuarantineOverruns() - overruns);
+        }
+    }
+
+    private static boolean isActive(QuarantinedFile quarantinedFile) {
+        long expiry = Duration.ofDays(ApplicationConfiguration.resolutionQuarantineExpiryDays()).toMillis();
+        return System.currentTimeMillis() - quarantinedFile.lastOverrun() < expiry;
+    }
+
+    /**
+     * @return the files that exceeded their budget during this run
+     */
+    public List<QuarantinedFile> quarantinedThisRun() {
+        return List.copyOf(quarantinedThisRun);
+    }
+
+    /**
+     * @return the files that have been skipped during this run by their blob id, with the location they were first
+     * skipped at
+     */
+    public Map<String, Path> skippedThisRun() {
+        return Map.copyOf(skippedThisRun);
+    }
+
+    /**
+     * @return the number of files that have been skipped because they were quarantined during this or an earlier run
+     */
+    public long skippedFiles() {
+        return skippedFiles.sum();
+    }
+}
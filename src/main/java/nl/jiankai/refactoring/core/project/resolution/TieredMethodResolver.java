@@ -0,0 +1,318 @@
+package nl.jiankai.refactoring.core.project.resolution;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.nodeTypes.NodeWithExtends;
+import com.github.javaparser.ast.nodeTypes.NodeWithImplements;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.ast.type.UnknownType;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.types.ResolvedReferenceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves calls to the methods of a library in two tiers. The first tier decides the calls whose target follows from
+ * the file alone: the call is made on a variable with a declared type, on a type name or through a static import, the
+ * type is imported by name, every super type of the type is part of the library, and exactly one method of the
+ * library with the called name accepts the number of arguments. All other calls are escalated to the symbol solver through the {@link MethodResolutionMemo}.
+ * <p>
+ * A fraction of the decisions of the first tier can be audited by resolving them with the symbol solver as well. The
+ * decision is returned either way, so the result does not depend on which calls were audited.
+ */
+public final class TieredMethodResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TieredMethodResolver.class);
+    private static final LongAdder TOTAL_DECIDED = new LongAdder();
+    private static final LongAdder TOTAL_ESCALATED = new LongAdder();
+    private static final LongAdder TOTAL_UNRESOLVED = new LongAdder();
+    private static final LongAdder TOTAL_AUDITED = new LongAdder();
+    private static final LongAdder TOTAL_DISAGREEMENTS = new LongAdder();
+    private final OverloadTable overloads;
+    private final MethodResolutionMemo resolutionMemo;
+    private final Supplier<TypeSolver> typeSolver;
+    private final double auditRate;
+    private final Map<String, Optional<Set<String>>> supertypes = new ConcurrentHashMap<>();
+    private final AtomicLong decided = new AtomicLong();
+    private final AtomicLong escalated = new AtomicLong();
+    private final AtomicLong unresolved = new AtomicLong();
+    private final AtomicLong audited = new AtomicLong();
+    private final AtomicLong disagreements = new AtomicLong();
+
+    /**
+     * @param overloads      the methods of the library, an empty table escalates every call
+     * @param resolutionMemo the memo of the project the calls are made in
+     * @param typeSolver     the type solver of the project for the current thread, used to find the super types of the called types
+     * @param auditRate      the fraction of the decisions of the first tier that is checked against the symbol solver
+     */
+    public TieredMethodResolver(OverloadTable overloads, MethodResolutionMemo resolutionMemo, Supplier<TypeSolver> typeSolver, double auditRate) {
+        this.overloads = overloads;
+        this.resolutionMemo = resolutionMemo;
+        this.typeSolver = typeSolver;
+        this.auditRate = auditRate;
+    }
+
+    /**
+     * @param methodCall the call to resolve
+     * @return the qualified signature of the called method, empty when the call could not be resolved
+     */
+    public Optional<String> resolve(MethodCallExpr methodCall) {
+        Optional<String> decision = overloads.isEmpty() ? Optional.empty() : decide(methodCall);
+        if (decision.isEmpty()) {
+            escalated.incrementAndGet();
+            TOTAL_ESCALATED.increment();
+            Optional<String> resolved = resolutionMemo.resolve(methodCall);
+            if (resolved.isEmpty()) {
+                unresolved.incrementAndGet();
+                TOTAL_UNRESOLVED.increment();
+            }
+            return resolved;
+        }
+
+        decided.incrementAndGet();
+        TOTAL_DECIDED.increment();
+        if (auditRate > 0 && ThreadLocalRandom.current().nextDouble() < auditRate) {
+            audited.incrementAndGet();
+            TOTAL_AUDITED.increment();
+            Optional<String> resolved = resolutionMemo.resolve(methodCall);
+            if (!resolved.equals(decision)) {
+                disagreements.incrementAndGet();
+                TOTAL_DISAGREEMENTS.increment();
+                LOGGER.debug("The first tier decided '{}' for call '{}' at {}, the symbol solver resolved it to '{}'",
+                        decision.get(), methodCall, methodCall.getRange().map(range -> range.begin).orElse(null), resolved.orElse("nothing"));
+            }
+        }
+        return decision;
+    }
+
+    public Statistics statistics() {
+        return new Statistics(decided.get(), escalated.get(), unresolved.get(), audited.get(), disagreements.get());
+    }
+
+    /**
+     * @return the statistics of all resolvers of the process
+     */
+    public static Statistics totalStatistics() {
+        return new Statistics(TOTAL_DECIDED.sum(), TOTAL_ESCALATED.sum(), TOTAL_UNRESOLVED.sum(), TOTAL_AUDITED.sum(), TOTAL_DISAGREEMENTS.sum());
+    }
+
+    private Optional<String> decide(MethodCallExpr methodCall) {
+        try {
+            Optional<CompilationUnit> compilationUnit = methodCall.findCompilationUnit();
+            if (compilationUnit.isEmpty()) {
+                return Optional.empty();
+            }
+
+            Optional<String> type = methodCall.getScope().isPresent()
+                    ? scopeType(methodCall.getScope().get(), compilationUnit.get())
+                    : staticallyImportedType(methodCall, compilationUnit.get());
+            return type.flatMap(qualifiedType -> supertypes(qualifiedType)
+                    .flatMap(supertypes -> overloads.unambiguous(qualifiedType, supertypes, methodCall.getNameAsString(), methodCall.getArguments().size())));
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not decide the method of call '{}' in the first tier", methodCall, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Only the declaration of the type is loaded, which is cheap compared to resolving a call
+     *
+     * @return the qualified names of all super types of the type, empty when the type or one of its super types can not be solved
+     */
+    private Optional<Set<String>> supertypes(String type) {
+        Optional<Set<String>> cached = supertypes.get(type);
+        if (cached != null) {
+            return cached;
+        }
+
+        Optional<Set<String>> solved;
+        try {
+            solved = Optional.of(typeSolver.get().solveType(type).getAllAncestors().stream()
+                    .map(ResolvedReferenceType::getQualifiedName)
+                    .collect(Collectors.toUnmodifiableSet()));
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not solve the super types of '{}'", type, e);
+            solved = Optional.empty();
+        }
+        supertypes.putIfAbsent(type, solved);
+        return solved;
+    }
+
+    /**
+     * The scope is either a variable, of which the declared type is used, or the name of a type for static calls
+     */
+    private Optional<String> scopeType(Expression scope, CompilationUnit compilationUnit) {
+        if (scope.isNameExpr()) {
+            String name = scope.asNameExpr().getNameAsString();
+            Optional<List<Type>> declaredTypes = declaredTypes(scope, name);
+            if (declaredTypes.isEmpty()) {
+                return qualify(name, compilationUnit);
+            }
+
+            Set<String> typeNames = new HashSet<>();
+            for (Type type : declaredTypes.get()) {
+                if (!type.isClassOrInterfaceType()) {
+                    return Optional.empty();
+                }
+                typeNames.add(type.asClassOrInterfaceType().getNameWithScope());
+            }
+            return typeNames.size() == 1 ? qualify(typeNames.iterator().next(), compilationUnit) : Optional.empty();
+        }
+
+        if (scope.isFieldAccessExpr() && isQualifiedName(scope)) {
+            Expression leftmost = scope;
+            while (leftmost.isFieldAccessExpr()) {
+                leftmost = leftmost.asFieldAccessExpr().getScope();
+            }
+            return declaredTypes(leftmost, leftmost.asNameExpr().getNameAsString()).isEmpty()
+                    ? qualify(scope.toString(), compilationUnit)
+                    : Optional.empty();
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Methods of the enclosing types and their super types take precedence over static imports, so calls from types
+     * that declare a method with the same name or that have a super type are escalated
+     */
+    private Optional<String> staticallyImportedType(MethodCallExpr methodCall, CompilationUnit compilationUnit) {
+        String name = methodCall.getNameAsString();
+        Optional<Node> ancestor = methodCall.getParentNode();
+        while (ancestor.isPresent()) {
+            Node current = ancestor.get();
+            if (current instanceof ObjectCreationExpr objectCreation && objectCreation.getAnonymousClassBody().isPresent()) {
+                return Optional.empty();
+            }
+            if (current instanceof TypeDeclaration<?> typeDeclaration) {
+                if (!typeDeclaration.getMethodsByName(name).isEmpty()
+                        || current instanceof NodeWithExtends<?> withExtends && withExtends.getExtendedTypes().isNonEmpty()
+                        || current instanceof NodeWithImplements<?> withImplements && withImplements.getImplementedTypes().isNonEmpty()) {
+                    return Optional.empty();
+                }
+            }
+            ancestor = current.getParentNode();
+        }
+
+        Set<String> types = new HashSet<>();
+        for (ImportDeclaration importDeclaration : compilationUnit.getImports()) {
+            if (importDeclaration.isStatic() && !importDeclaration.isAsterisk() && importDeclaration.getName().getIdentifier().equals(name)) {
+                importDeclaration.getName().getQualifier().ifPresent(qualifier -> types.add(qualifier.asString()));
+            }
+        }
+        if (types.isEmpty()) {
+            for (ImportDeclaration importDeclaration : compilationUnit.getImports()) {
+                if (importDeclaration.isStatic() && importDeclaration.isAsterisk() && overloads.declares(importDeclaration.getNameAsString(), name)) {
+                    types.add(importDeclaration.getNameAsString());
+                }
+            }
+        }
+
+        return types.size() == 1 ? Optional.of(types.iterator().next()) : Optional.empty();
+    }
+
+    /**
+     * Finds the declarations of a variable from the innermost scope outwards. All declarations of the name within a
+     * method are taken into account, so a name that is declared with different types in different blocks is ambiguous.
+     *
+     * @return the declared types of the variable, empty when the name is not declared as a variable in the file
+     */
+    private Optional<List<Type>> declaredTypes(Node node, String name) {
+        Optional<Node> ancestor = node.getParentNode();
+        while (ancestor.isPresent()) {
+            Node current = ancestor.get();
+            List<Type> types = new ArrayList<>();
+            if (current instanceof TypeDeclaration<?> typeDeclaration) {
+                typeDeclaration.getFieldByName(name).ifPresent(field -> field.getVariables().stream()
+                        .filter(variable -> variable.getNameAsString().equals(name))
+                        .forEach(variable -> types.add(variable.getType())));
+                if (typeDeclaration instanceof RecordDeclaration recordDeclaration) {
+                    recordDeclaration.getParameters().stream()
+                            .filter(parameter -> parameter.getNameAsString().equals(name))
+                            .forEach(parameter -> types.add(parameter.getType()));
+                }
+            } else if (current instanceof ObjectCreationExpr objectCreation) {
+                objectCreation.getAnonymousClassBody().ifPresent(members -> members.stream()
+                        .filter(BodyDeclaration::isFieldDeclaration)
+                        .flatMap(member -> member.asFieldDeclaration().getVariables().stream())
+                        .filter(variable -> variable.getNameAsString().equals(name))
+                        .forEach(variable -> types.add(variable.getType())));
+            } else if (current instanceof BodyDeclaration<?>) {
+                // pattern variables are not collected, so their names can not be told apart from other variables
+                if (!current.findAll(PatternExpr.class).isEmpty()) {
+                    return Optional.of(List.of(new UnknownType()));
+                }
+                current.findAll(Parameter.class, parameter -> parameter.getNameAsString().equals(name)).forEach(parameter -> types.add(parameter.getType()));
+                current.findAll(VariableDeclarator.class, variable -> variable.getNameAsString().equals(name)).forEach(variable -> types.add(variable.getType()));
+            }
+
+            if (!types.isEmpty()) {
+                return Optional.of(types);
+            }
+            ancestor = current.getParentNode();
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Qualifies a type name through the single type imports, as a fully qualified name or as a type in the same
+     * package. Types declared in the file itself and types imported on demand are not qualified, because the file
+     * or its package may declare a type with the same name that extends a type of the library.
+     */
+    private Optional<String> qualify(String typeName, CompilationUnit compilationUnit) {
+        String first = typeName.contains(".") ? typeName.substring(0, typeName.indexOf('.')) : typeName;
+        if (!compilationUnit.findAll(TypeDeclaration.class, type -> type.getNameAsString().equals(first)).isEmpty()) {
+            return Optional.empty();
+        }
+
+        for (ImportDeclaration importDeclaration : compilationUnit.getImports()) {
+            if (!importDeclaration.isStatic() && !importDeclaration.isAsterisk() && importDeclaration.getName().getIdentifier().equals(first)) {
+                return Optional.of(importDeclaration.getNameAsString() + typeName.substring(first.length()));
+            }
+        }
+        if (typeName.contains(".") && overloads.declaresMethodsIn(typeName)) {
+            return Optional.of(typeName);
+        }
+
+        String samePackageType = compilationUnit
+                .getPackageDeclaration()
+                .map(packageDeclaration -> packageDeclaration.getNameAsString() + "." + typeName)
+                .orElse(typeName);
+        return overloads.declaresMethodsIn(samePackageType) ? Optional.of(samePackageType) : Optional.empty();
+    }
+
+    private static boolean isQualifiedName(Expression expression) {
+        while (expression.isFieldAccessExpr()) {
+            expression = expression.asFieldAccessExpr().getScope();
+        }
+        return expression.isNameExpr();
+    }
+
+    public record Statistics(long decided, long escalated, long unresolved, long audited, long disagreements) {
+        /**
+         * @param earlier statistics taken earlier from the same resolvers
+         * @return the statistics of the calls resolved since
+         */
+        public Statistics since(Statistics earlier) {
+            return new Statistics(decided - earlier.decided, escalated - earlier.escalated, unresolved - earlier.unresolved, audited - earlier.audited, disagreements - earlier.disagreements);
+        }
+
+        @Override
+        public String toString() {
+            long calls = decided + escalated;
+            return "%s decided by the first tier (%.1f%%), %s escalated to the symbol solver of which %s unresolved, %s of %s audited decisions disagreed with the symbol solver"
+                    .formatted(decided, calls == 0 ? 0.0 : decided * 100.0 / calls, escalated, unresolved, disagreements, audited);
+        }
+    }
+}
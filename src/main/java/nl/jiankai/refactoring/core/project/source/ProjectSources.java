@@ -0,0 +1,194 @@
+package nl.jiankai.refactoring.core.project.source;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
+import nl.jiankai.refactoring.core.project.resolution.MethodResolutionMemo;
+import nl.jiankai.refactoring.core.project.typesolver.SupervisedTypeSolver;
+import nl.jiankai.refactoring.core.project.typesolver.TypeSolverRegistry;
+import nl.jiankai.refactoring.util.HashingUtil;
+import nl.jiankai.refactoring.util.JavaParserUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The java source files of a project together with everything that is needed to parse and resolve them. The type
+ * solver is only created once the sources actually need to be parsed.
+ * <p>
+ * Parsers and the caches of their type solvers can not be used by multiple threads at the same time, so every thread
+ * that parses the sources gets its own parser, and a compilation unit may only be resolved by the thread that parsed it. The pooled jars of the classpath are still shared between them, and with
+ * the other projects that have them on their classpath.
+ */
+public final class ProjectSources {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProjectSources.class);
+    private final File projectPath;
+    private final List<File> sourceDirectories;
+    private final List<Path> javaFiles;
+    private final Collection<File> jars;
+    private final List<File> librarySnapshots;
+    private final ThreadLocal<Resolution> resolutions = new ThreadLocal<>();
+    private final MethodResolutionMemo resolutionMemo = new MethodResolutionMemo(ApplicationConfiguration.resolutionMemoSize());
+    private String classpathFingerprint;
+
+    public ProjectSources(File projectPath, List<File> sourceDirectories, List<Path> javaFiles, Collection<File> jars) {
+        this(projectPath, sourceDirectories, javaFiles, jars, List.of());
+    }
+
+    /**
+     * @param librarySnapshots the snapshots of the analysed libraries whose version the project depends on, which take
+     *                         precedence over the copies of those libraries among the dependency jars
+     */
+    public ProjectSources(File projectPath, List<File> sourceDirectories, List<Path> javaFiles, Collection<File> jars, List<File> librarySnapshots) {
+        this.projectPath = projectPath;
+        this.sourceDirectories = List.copyOf(sourceDirectories);
+        this.javaFiles = List.copyOf(javaFiles);
+        this.jars = List.copyOf(jars);
+        this.librarySnapshots = List.copyOf(librarySnapshots);
+    }
+
+    public File projectPath() {
+        return projectPath;
+    }
+
+    /**
+     * @return all java source files of the project in a stable order
+     */
+    public List<Path> javaFiles() {
+        return javaFiles;
+    }
+
+    public Collection<File> jars() {
+        return jars;
+    }
+
+    /**
+     * @param files the java files to keep
+     * @return the sources of the project with only those of its java files that are in the given files
+     */
+    public ProjectSources withJavaFiles(Collection<Path> files) {
+        Set<Path> normalizedFiles = files.stream().map(file -> file.toAbsolutePath().normalize()).collect(Collectors.toSet());
+        return new ProjectSources(projectPath, sourceDirectories, javaFiles.stream().filter(file -> normalizedFiles.contains(file.toAbsolutePath().normalize())).toList(), jars, librarySnapshots);
+    }
+
+    /**
+     * @return the parser of the current thread, configured with a symbol resolver for the project's sources and dependencies
+     * @throws IOException when one of the dependency jars could not be opened
+     */
+    public JavaParser parser() throws IOException {
+        return resolution().parser();
+    }
+
+    /**
+     * @return the type solver of the parser of the current thread
+     * @throws UncheckedIOException when one of the dependency jars could not be opened
+     */
+    public TypeSolver typeSolver() {
+        try {
+            return resolution().typeSolver();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the memo of method call resolutions, shared by all parsers of the project
+     */
+    public MethodResolutionMemo resolutionMemo() {
+        return resolutionMemo;
+    }
+
+    /**
+     * @return the parser configuration of the current thread
+     * @throws IOException when one of the dependency jars could not be opened
+     */
+    public ParserConfiguration parserConfiguration() throws IOException {
+        return parser().getParserConfiguration();
+    }
+
+    /**
+     * A fingerprint of everything outside the source files that influences how symbols are resolved: the java
+     * version, the exact dependency jars and the library snapshots.
+     *
+     * @return the fingerprint of the classpath used to resolve the sources
+     */
+    public synchronized String classpathFingerprint() {
+        if (classpathFingerprint == null) {
+            String classpath = Stream
+                    .concat(jars.stream(), librarySnapshots.stream())
+                    .map(File::getAbsoluteFile)
+                    .map(jar -> jar.getPath() + ":" + jar.length() + ":" + jar.lastModified())
+                    .sorted()
+                    .collect(Collectors.joining(File.pathSeparator));
+            try {
+                classpathFingerprint = HashingUtil.md5Hash(Runtime.version().feature() + File.pathSeparator + classpath);
+            } catch (NoSuchAlgorithmException e) {
+                LOGGER.warn("Couldn't hash the classpath due to the hashing algorithm not being present", e);
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return classpathFingerprint;
+    }
+
+    /**
+     * The parser of a thread is held by the thread, so it can be collected once the thread ends or these sources are no
+     * longer used
+     */
+    private Resolution resolution() throws IOException {
+        Resolution resolution = resolutions.get();
+        if (resolution == null) {
+            resolution = createResolution();
+            resolutions.set(resolution);
+        }
+        return resolution;
+    }
+
+    private Resolution createResolution() throws IOException {
+        TypeSolverRegistry typeSolverRegistry = TypeSolverRegistry.getInstance();
+        CombinedTypeSolver typeSolver = new SupervisedTypeSolver(typeSolverRegistry.jdkTypeSolver());
+
+        for (File sourceDir : sourceDirectories) {
+            // the syntax trees of the source directories are cached by the type solver, so they get the same profile
+            ParserConfiguration sourceConfiguration = lowMemoryProfile(new ParserConfiguration());
+            JavaParserTypeSolver sourceTypeSolver = new JavaParserTypeSolver(sourceDir.toPath(), sourceConfiguration, ApplicationConfiguration.sourceTypeSolverCacheSize());
+            JavaParserUtil.countCachedAsts(sourceTypeSolver, sourceConfiguration);
+            typeSolver.add(sourceTypeSolver);
+        }
+
+        for (TypeSolver classpathTypeSolver : typeSolverRegistry.classpathTypeSolvers(projectPath.getAbsolutePath(), List.copyOf(jars), librarySnapshots)) {
+            typeSolver.add(classpathTypeSolver);
+        }
+        LOGGER.debug("Type solver pool: {}", typeSolverRegistry.statistics());
+
+        return new Resolution(new JavaParser(lowMemoryProfile(new ParserConfiguration().setSymbolResolver(new JavaSymbolSolver(typeSolver)))), typeSolver);
+    }
+
+    private static ParserConfiguration lowMemoryProfile(ParserConfiguration parserConfiguration) {
+        if (ApplicationConfiguration.lowMemoryParser()) {
+            parserConfiguration
+                    .setAttributeComments(false)
+                    .setStoreTokens(false)
+                    .setLexicalPreservationEnabled(false);
+        }
+
+        return parserConfiguration;
+    }
+
+    private record Resolution(JavaParser parser, TypeSolver typeSolver) {
+    }
+}
@@ -0,0 +1,19 @@
+package nl.jiankai.refactoring.core.project.source;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A directory containing java sources, such as {@code src/main/java} of a module
+ *
+ * @param root      the directory the package structure starts in
+ * @param module    the directory of the module the source root belongs to
+ * @param kind      what kind of sources the root contains
+ * @param javaFiles the java files inside the root in a stable order
+ */
+public record SourceRoot(Path root, Path module, Kind kind, List<Path> javaFiles) {
+
+    public enum Kind {
+        MAIN, GENERATED, TEST
+    }
+}
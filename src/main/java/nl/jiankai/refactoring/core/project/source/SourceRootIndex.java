@@ -0,0 +1,200 @@
+package nl.jiankai.refactoring.core.project.source;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+/**
+ * The source roots and java files of a project, collected in a single walk over the project directory. Directories
+ * that never contain sources of the project, such as {@code .git}, {@code node_modules} and build output, are not
+ * entered. Of a {@code target} directory only the generated sources are visited.
+ * <p>
+ * The modification time of every visited directory is recorded, because adding, removing or renaming an entry of a
+ * directory changes it. That way it can be checked whether the index is still up to date without walking the project
+ * again, also for untracked and generated files.
+ */
+public final class SourceRootIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourceRootIndex.class);
+    private static final Set<String> EXCLUDED_DIRECTORIES = Set.of("node_modules");
+    private static final String BUILD_DIRECTORY = "target";
+    private static final Set<String> GENERATED_SOURCE_DIRECTORIES = Set.of("generated-sources", "generated-test-sources");
+    private final List<SourceRoot> sourceRoots;
+    private final List<Path> javaFiles;
+    private final Map<Path, FileTime> directories;
+
+    private SourceRootIndex(List<SourceRoot> sourceRoots, List<Path> javaFiles, Map<Path, FileTime> directories) {
+        this.sourceRoots = List.copyOf(sourceRoots);
+        this.javaFiles = List.copyOf(javaFiles);
+        this.directories = Map.copyOf(directories);
+    }
+
+    /**
+     * Walks the project directory to find its source roots and java files
+     *
+     * @param projectPath the root directory of the project
+     * @return the index of the project
+     */
+    public static SourceRootIndex build(Path projectPath) {
+        Map<Path, SourceRoot.Kind> roots = new HashMap<>();
+        Map<Path, List<Path>> filesPerRoot = new HashMap<>();
+        List<Path> javaFiles = new ArrayList<>();
+        Map<Path, FileTime> directories = new HashMap<>();
+        Deque<Path> enclosingRoots = new ArrayDeque<>();
+
+        try {
+            Files.walkFileTree(projectPath, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(projectPath) && isExcluded(dir, !enclosingRoots.isEmpty())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    directories.put(dir, attrs.lastModifiedTime());
+                    kindOf(dir).ifPresent(kind -> {
+                        roots.put(dir, kind);
+                        filesPerRoot.put(dir, new ArrayList<>());
+                        enclosingRoots.push(dir);
+                    });
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && file.toString().endsWith(".java")) {
+                        javaFiles.add(file);
+                        if (!enclosingRoots.isEmpty()) {
+                            filesPerRoot.get(enclosingRoots.peek()).add(file);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    if (!enclosingRoots.isEmpty() && enclosingRoots.peek().equals(dir)) {
+                        enclosingRoots.pop();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Could not collect the sources of project '{}'", projectPath, e);
+        }
+
+        List<SourceRoot> sourceRoots = roots
+                .entrySet()
+                .stream()
+                .map(root -> new SourceRoot(root.getKey(), moduleOf(root.getKey()), root.getValue(), filesPerRoot.get(root.getKey()).stream().sorted().toList()))
+                .sorted(Comparator.comparing(SourceRoot::kind).thenComparing(SourceRoot::root))
+                .toList();
+        javaFiles.sort(Comparator.naturalOrder());
+
+        return new SourceRootIndex(sourceRoots, javaFiles, directories);
+    }
+
+    /**
+     * @return whether no entry has been added to or removed from any of the visited directories since the index was built
+     */
+    public boolean isUpToDate() {
+        for (Map.Entry<Path, FileTime> directory : directories.entrySet()) {
+            try {
+                if (!Files.getLastModifiedTime(directory.getKey()).equals(directory.getValue())) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return all source roots, main sources first, then the generated sources and finally the test sources
+     */
+    public List<SourceRoot> sourceRoots() {
+        return sourceRoots;
+    }
+
+    /**
+     * @return all java files of the project in a stable order, including the files outside of a known source root
+     */
+    public List<Path> javaFiles() {
+        return javaFiles;
+    }
+
+    /**
+     * @return the directories the type solver resolves the types declared by the project from
+     */
+    public List<File> typeSolverRoots() {
+        return sourceRoots
+                .stream()
+                .map(SourceRoot::root)
+                .map(Path::toFile)
+                .toList();
+    }
+
+    /**
+     * Inside a source root the directories are packages, which may be called {@code target} as well
+     */
+    private static boolean isExcluded(Path dir, boolean insideSourceRoot) {
+        String name = fileName(dir);
+        if (name.startsWith(".")) {
+            return true;
+        }
+        if (insideSourceRoot) {
+            return false;
+        }
+
+        Path parent = dir.getParent();
+        return EXCLUDED_DIRECTORIES.contains(name)
+                || parent != null && fileName(parent).equals(BUILD_DIRECTORY) && !GENERATED_SOURCE_DIRECTORIES.contains(name);
+    }
+
+    private static Optional<SourceRoot.Kind> kindOf(Path dir) {
+        Path parent = dir.getParent();
+        if (parent == null) {
+            return Optional.empty();
+        }
+
+        Path buildDirectory = parent.getParent();
+        if (GENERATED_SOURCE_DIRECTORIES.contains(fileName(parent)) && buildDirectory != null && fileName(buildDirectory).equals(BUILD_DIRECTORY)) {
+            return Optional.of(SourceRoot.Kind.GENERATED);
+        }
+
+        Path src = parent.getParent();
+        if (fileName(dir).equals("java") && src != null && fileName(src).equals("src")) {
+            return switch (fileName(parent)) {
+                case "main" -> Optional.of(SourceRoot.Kind.MAIN);
+                case "test" -> Optional.of(SourceRoot.Kind.TEST);
+                default -> Optional.empty();
+            };
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Both {@code module/src/main/java} and {@code module/target/generated-sources/annotations} are three levels below
+     * their module
+     */
+    private static Path moduleOf(Path root) {
+        Path module = root;
+        for (int i = 0; i < 3 && module.getParent() != null; i++) {
+            module = module.getParent();
+        }
+        return module;
+    }
+
+    private static String fileName(Path path) {
+        return path.getFileName() == null ? "" : path.getFileName().toString();
+    }
+}
@@ -0,0 +1,204 @@
+package nl.jiankai.refactoring.core.project.source;
+
+import nl.jiankai.refactoring.core.project.Project;
+import nl.jiankai.refactoring.core.project.ProjectListener;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the source root index of every project for as long as the tree checked out in the project does not change and
+ * no file has been added to or removed from the working tree, so the project directory only has to be walked again
+ * after another commit has been checked out or files have been created, for example by a build. The index of a
+ * project is also dropped when the project is discovered again or removed.
+ */
+public final class SourceRootIndexCache implements ProjectListener<Project> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourceRootIndexCache.class);
+    private static final SourceRootIndexCache INSTANCE = new SourceRootIndexCache();
+    private final Map<Path, CachedIndex> indices = new ConcurrentHashMap<>();
+
+    private SourceRootIndexCache() {
+    }
+
+    public static SourceRootIndexCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param projectPath the root directory of the project
+     * @return the source root index of the project as it is currently checked out
+     */
+    public SourceRootIndex get(File projectPath) {
+        Path path = projectPath.getAbsoluteFile().toPath().normalize();
+        String treeId = treeId(projectPath).orElse("");
+
+        return indices.compute(path, (key, cached) -> {
+            if (cached != null && cached.treeId().equals(treeId) && cached.index().isUpToDate()) {
+                return cached;
+            }
+            LOGGER.debug("Indexing the sources of project '{}' at tree {}", path, treeId);
+            return new CachedIndex(treeId, SourceRootIndex.build(path));
+        }).index();
+    }
+
+    /**
+     * Removes the index of the project, for example after files have been generated into it
+     *
+     * @param projectPath the root directory of the project
+     */
+    public void invalidate(File projectPath) {
+        indices.remove(projectPath.getAbsoluteFile().toPath().normalize());
+    }
+
+    /**
+     * Installing a new project may generate sources into it
+     */
+    @Override
+    public void onAdded(ProjectEvent<Project> event) {
+        invalidate(event.affected().getLocalPath());
+    }
+
+    @Override
+    public void onRemoved(ProjectEvent<Project> event) {
+        invalidate(event.affected().getLocalPath());
+    }
+
+    /**
+     * @param projectPath the root directory of a project
+     * @return the id of the tree checked out in the project, empty when the project is not a git repository
+     */
+    public static Optional<String> treeId(File projectPath) {
+        FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder().findGitDir(projectPath);
+        if (repositoryBuilder.getGitDir() == null) {
+            return Optional.empty();
+        }
+
+        try (Repository repository = repositoryBuilder.build()) {
+            return Optional.ofNullable(repository.resolve(Constants.HEAD + "^{tree}")).map(ObjectId::name);
+        } catch (IOException e) {
+            LOGGER.warn("Could not determine the checked out tree of project '{}'", projectPath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Compares two trees of the repository of a project, including files outside of the project directory when the
+     * project is part of a larger repository
+     *
+     * @param projectPath the root directory of a project
+     * @param oldTreeId   the id of the tree the project was at before
+     * @param newTreeId   the id of the tree the project is at now
+     * @return the absolute paths of the files that were added, modified or removed between the trees, empty when the
+     * project is not a git repository or one of the trees is not available anymore
+     */
+    public static Optional<Set<Path>> changedFiles(File projectPath, String oldTreeId, String newTreeId) {
+        FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder().findGitDir(projectPath.getAbsoluteFile());
+        if (repositoryBuilder.getGitDir() == null) {
+            return Optional.empty();
+        }
+
+        try (Repository repository = repositoryBuilder.build();
+             ObjectReader reader = repository.newObjectReader();
+             TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(new CanonicalTreeParser(null, reader, ObjectId.fromString(oldTreeId)));
+            treeWalk.addTree(new CanonicalTreeParser(null, reader, ObjectId.fromString(newTreeId)));
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            treeWalk.setRecursive(true);
+
+            Path workTree = repository.getWorkTree().getAbsoluteFile().toPath().normalize();
+            Set<Path> changedFiles = new HashSet<>();
+            while (treeWalk.next()) {
+                changedFiles.add(workTree.resolve(treeWalk.getPathString()));
+            }
+            return Optional.of(changedFiles);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Could not compare tree {} with tree {} of project '{}'", oldTreeId, newTreeId, projectPath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param projectPath the root directory of a project
+     * @return the absolute paths of the files in the project directory that differ from the checked out tree, including
+     * untracked and deleted files but not ignored files, empty when the project is not a git repository
+     */
+    public static Optional<Set<Path>> uncommittedFiles(File projectPath) {
+        FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder().findGitDir(projectPath.getAbsoluteFile());
+        if (repositoryBuilder.getGitDir() == null) {
+            return Optional.empty();
+        }
+
+        try (Repository repository = repositoryBuilder.build(); Git git = Git.wrap(repository)) {
+            Status status = git.status().call();
+            Path workTree = repository.getWorkTree().getAbsoluteFile().toPath().normalize();
+            Path project = projectPath.getAbsoluteFile().toPath().normalize();
+            Set<Path> uncommittedFiles = new HashSet<>();
+            for (String file : status.getUncommittedChanges()) {
+                uncommittedFiles.add(workTree.resolve(file));
+            }
+            for (String file : status.getUntracked()) {
+                uncommittedFiles.add(workTree.resolve(file));
+            }
+            uncommittedFiles.removeIf(file -> !file.startsWith(project));
+            return Optional.of(uncommittedFiles);
+        } catch (IOException | GitAPIException e) {
+            LOGGER.warn("Could not determine the uncommitted files of project '{}'", projectPath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param projectPath the root directory of a project
+     * @param treeId      the id of a tree of the repository of the project
+     * @param file        the absolute path of a file in the repository
+     * @return the content of the file in the tree, empty when the project is not a git repository, the tree is not
+     * available anymore or the file is not in the tree
+     */
+    public static Optional<String> fileContent(File projectPath, String treeId, Path file) {
+        FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder().findGitDir(projectPath.getAbsoluteFile());
+        if (repositoryBuilder.getGitDir() == null) {
+            return Optional.empty();
+        }
+
+        try (Repository repository = repositoryBuilder.build();
+             ObjectReader reader = repository.newObjectReader()) {
+            Path workTree = repository.getWorkTree().getAbsoluteFile().toPath().normalize();
+            String path = workTree.relativize(file.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+            try (TreeWalk treeWalk = TreeWalk.forPath(reader, path, ObjectId.fromString(treeId))) {
+                if (treeWalk == null) {
+                    return Optional.empty();
+                }
+                return Optional.of(new String(reader.open(treeWalk.getObjectId(0)).getBytes(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Could not read '{}' in tree {} of project '{}'", file, treeId, projectPath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param treeId the tree the project was at, empty when the project is not a git repository
+     */
+    private record CachedIndex(String treeId, SourceRootIndex index) {
+    }
+}
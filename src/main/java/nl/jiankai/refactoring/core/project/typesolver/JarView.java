@@ -0,0 +1,51 @@
+package nl.jiankai.refactoring.core.project.typesolver;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.javassistmodel.JavassistFactory;
+import javassist.CtClass;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The view of a single project on a pooled jar. The declarations of the jar are created against the root type solver
+ * of the project, so the super types they refer to are solved on the classpath of that project, while the (expensive)
+ * index and class pool of the jar are shared with other projects.
+ */
+final class JarView implements TypeSolver {
+    private final PooledJar jar;
+    private TypeSolver parent;
+
+    JarView(PooledJar jar) {
+        this.jar = jar;
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        Objects.requireNonNull(parent);
+        if (this.parent != null) {
+            throw new IllegalStateException("This TypeSolver already has a parent.");
+        }
+        if (parent == this) {
+            throw new IllegalStateException("The parent of this TypeSolver cannot be itself.");
+        }
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        Optional<CtClass> ctClass = jar.read(name);
+        if (ctClass.isEmpty()) {
+            return SymbolReference.unsolved();
+        }
+
+        return SymbolReference.solved(JavassistFactory.toTypeDeclaration(ctClass.get(), getRoot()));
+    }
+}
@@ -0,0 +1,243 @@
+package nl.jiankai.refactoring.core.project.typesolver;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.javassistmodel.JavassistFactory;
+import javassist.ClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Solves the types of the JDK from the class files in the {@code jrt:/} file system of the running JDK. Unlike the
+ * reflection type solver no classes are loaded, so the classpath of this application can not leak into the resolution,
+ * and names that are not part of the JDK are rejected by a lookup in an index instead of a failing class load.
+ * <p>
+ * The index of all classes per module is built once per JDK version and stored in the given directory. Declarations
+ * are only read from their class file when they are first solved and are then shared by all threads and projects.
+ */
+public final class JdkTypeSolver implements TypeSolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdkTypeSolver.class);
+    private static final int INDEX_FORMAT = 1;
+    private final Map<String, String> modulesByBinaryName;
+    private final Map<String, String> binaryNamesByName;
+    private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> solvedTypes = new ConcurrentHashMap<>();
+    private final ClassPool classPool = new ClassPool(false);
+    private final FileSystem jrt;
+    private TypeSolver parent;
+
+    private JdkTypeSolver(FileSystem jrt, Map<String, String> modulesByBinaryName) {
+        this.jrt = jrt;
+        this.modulesByBinaryName = modulesByBinaryName;
+        this.binaryNamesByName = new HashMap<>(modulesByBinaryName.size() * 4 / 3 + 1);
+        modulesByBinaryName.keySet().forEach(binaryName -> binaryNamesByName.put(binaryName.replace('$', '.'), binaryName));
+        this.classPool.appendClassPath(new JrtClassPath());
+    }
+
+    /**
+     * Reads the index of the running JDK from the index directory, building and storing it first when it does not exist
+     *
+     * @param indexDirectory the directory containing the indices per JDK version
+     * @return a type solver for the classes of the running JDK
+     * @throws IOException when the {@code jrt:/} file system could not be read
+     */
+    public static JdkTypeSolver create(Path indexDirectory) throws IOException {
+        FileSystem jrt;
+        try {
+            jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        } catch (ProviderNotFoundException | FileSystemNotFoundException e) {
+            throw new IOException("The running java version does not provide the jrt file system", e);
+        }
+
+        Path indexFile = indexDirectory.resolve("jdk-" + Runtime.version().toString().replaceAll("[^\\w.+-]", "_") + ".idx.gz");
+        Optional<Map<String, String>> index = readIndex(indexFile);
+        if (index.isPresent()) {
+            return new JdkTypeSolver(jrt, index.get());
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, String> modulesByBinaryName = buildIndex(jrt);
+        LOGGER.info("Indexed {} classes of JDK {} in {} ms", modulesByBinaryName.size(), Runtime.version(), System.currentTimeMillis() - start);
+        writeIndex(indexFile, modulesByBinaryName);
+        return new JdkTypeSolver(jrt, modulesByBinaryName);
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        Objects.requireNonNull(parent);
+        if (this.parent != null) {
+            throw new IllegalStateException("This TypeSolver already has a parent.");
+        }
+        if (parent == this) {
+            throw new IllegalStateException("The parent of this TypeSolver cannot be itself.");
+        }
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        String binaryName = binaryNamesByName.get(name);
+        if (binaryName == null) {
+            return SymbolReference.unsolved();
+        }
+
+        SymbolReference<ResolvedReferenceTypeDeclaration> solvedType = solvedTypes.get(binaryName);
+        if (solvedType == null) {
+            solvedType = solve(binaryName);
+            SymbolReference<ResolvedReferenceTypeDeclaration> concurrentlySolvedType = solvedTypes.putIfAbsent(binaryName, solvedType);
+            if (concurrentlySolvedType != null) {
+                solvedType = concurrentlySolvedType;
+            }
+        }
+        return solvedType;
+    }
+
+    private SymbolReference<ResolvedReferenceTypeDeclaration> solve(String binaryName) {
+        try {
+            CtClass ctClass;
+            // the class pool reads class files lazily, which is not safe to do from multiple threads
+            synchronized (classPool) {
+                ctClass = classPool.get(binaryName);
+                ctClass.getClassFile2();
+            }
+            return SymbolReference.solved(JavassistFactory.toTypeDeclaration(ctClass, getRoot()));
+        } catch (NotFoundException e) {
+            LOGGER.warn("Class '{}' is in the index of the JDK but could not be read", binaryName, e);
+            return SymbolReference.unsolved();
+        }
+    }
+
+    private static Map<String, String> buildIndex(FileSystem jrt) throws IOException {
+        Map<String, String> modulesByBinaryName = new HashMap<>();
+        try (Stream<Path> modules = Files.list(jrt.getPath("/modules"))) {
+            for (Path module : modules.toList()) {
+                String moduleName = module.getFileName().toString();
+                try (Stream<Path> files = Files.walk(module)) {
+                    files
+                            .map(file -> module.relativize(file).toString())
+                            .filter(JdkTypeSolver::isNamedClass)
+                            .forEach(file -> modulesByBinaryName.putIfAbsent(file.substring(0, file.length() - ".class".length()).replace('/', '.'), moduleName));
+                }
+            }
+        }
+
+        return modulesByBinaryName;
+    }
+
+    /**
+     * Anonymous and local classes can not be referred to by name, neither can the module and package descriptors
+     */
+    private static boolean isNamedClass(String file) {
+        if (!file.endsWith(".class") || file.endsWith("module-info.class") || file.endsWith("package-info.class")) {
+            return false;
+        }
+
+        String[] nestedNames = file.substring(file.lastIndexOf('/') + 1).split("\\$");
+        return Arrays.stream(nestedNames).skip(1).noneMatch(nestedName -> nestedName.isEmpty() || Character.isDigit(nestedName.charAt(0)));
+    }
+
+    /**
+     * The index is stored per module: the module name, the number of classes and the binary names of the classes
+     */
+    private static Optional<Map<String, String>> readIndex(Path indexFile) {
+        if (!Files.isRegularFile(indexFile)) {
+            return Optional.empty();
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(indexFile))))) {
+            if (input.readInt() != INDEX_FORMAT) {
+                return Optional.empty();
+            }
+
+            Map<String, String> modulesByBinaryName = new HashMap<>();
+            int modules = input.readInt();
+            for (int i = 0; i < modules; i++) {
+                String module = input.readUTF();
+                int classes = input.readInt();
+                for (int j = 0; j < classes; j++) {
+                    modulesByBinaryName.put(input.readUTF(), module);
+                }
+            }
+            return Optional.of(modulesByBinaryName);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read the JDK index '{}', building it again", indexFile, e);
+            return Optional.empty();
+        }
+    }
+
+    private static void writeIndex(Path indexFile, Map<String, String> modulesByBinaryName) {
+        Map<String, List<String>> classesByModule = new TreeMap<>();
+        modulesByBinaryName.forEach((binaryName, module) -> classesByModule.computeIfAbsent(module, m -> new ArrayList<>()).add(binaryName));
+
+        try {
+            Files.createDirectories(indexFile.getParent());
+            // written next to the index first, so a concurrent run never reads a partially written index
+            Path temporaryFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporaryFile))))) {
+                output.writeInt(INDEX_FORMAT);
+                output.writeInt(classesByModule.size());
+                for (Map.Entry<String, List<String>> module : classesByModule.entrySet()) {
+                    output.writeUTF(module.getKey());
+                    output.writeInt(module.getValue().size());
+                    for (String binaryName : module.getValue().stream().sorted().toList()) {
+                        output.writeUTF(binaryName);
+                    }
+                }
+            }
+            Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Could not store the JDK index '{}', it will be built again on the next run", indexFile, e);
+        }
+    }
+
+    private Path classFile(String binaryName) {
+        String module = modulesByBinaryName.get(binaryName);
+        return module == null ? null : jrt.getPath("/modules", module, binaryName.replace('.', '/') + ".class");
+    }
+
+    private class JrtClassPath implements ClassPath {
+
+        @Override
+        public InputStream openClassfile(String classname) throws NotFoundException {
+            Path classFile = classFile(classname);
+            if (classFile == null) {
+                return null;
+            }
+
+            try {
+                return Files.newInputStream(classFile);
+            } catch (IOException e) {
+                throw new NotFoundException("Could not read class '%s' from the jrt file system".formatted(classname), e);
+            }
+        }
+
+        @Override
+        public URL find(String classname) {
+            Path classFile = classFile(classname);
+            try {
+                return classFile == null ? null : classFile.toUri().toURL();
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package nl.jiankai.refactoring.core.project.typesolver;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The index and class pool of a single jar, shared by every project that has the jar on its classpath. The class pool
+ * reads class files lazily, which is not safe to do from multiple threads, so classes are only read under its lock.
+ */
+final class PooledJar {
+    private final Path path;
+    private final Map<String, String> binaryNamesByName;
+    private final ClassPool classPool = new ClassPool(false);
+    private final Set<String> projects = ConcurrentHashMap.newKeySet();
+
+    private PooledJar(Path path, Map<String, String> binaryNamesByName) throws NotFoundException {
+        this.path = path;
+        this.binaryNamesByName = binaryNamesByName;
+        this.classPool.appendClassPath(path.toString());
+    }
+
+    /**
+     * @param jar the jar to open
+     * @return the jar with the names of all of its classes indexed
+     * @throws IOException when the jar could not be read
+     */
+    static PooledJar open(Path jar) throws IOException {
+        Map<String, String> binaryNamesByName = new HashMap<>();
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+                    String binaryName = entry.getName().substring(0, entry.getName().length() - ".class".length()).replace('/', '.');
+                    binaryNamesByName.put(binaryName.replace('$', '.'), binaryName);
+                }
+            }
+        }
+
+        try {
+            return new PooledJar(jar, binaryNamesByName);
+        } catch (NotFoundException e) {
+            throw new IOException("Could not add jar '%s' to a class pool".formatted(jar), e);
+        }
+    }
+
+    /**
+     * @param name the canonical name of a class
+     * @return the class read from the jar, empty when the jar does not contain it
+     */
+    Optional<CtClass> read(String name) {
+        String binaryName = binaryNamesByName.get(name);
+        if (binaryName == null) {
+            return Optional.empty();
+        }
+
+        synchronized (classPool) {
+            try {
+                CtClass ctClass = classPool.get(binaryName);
+                ctClass.getClassFile2();
+                return Optional.of(ctClass);
+            } catch (NotFoundException e) {
+                throw new IllegalStateException("Class '%s' is in the index of jar '%s' but could not be read".formatted(binaryName, path), e);
+            }
+        }
+    }
+
+    /**
+     * @param project the project that uses the jar
+     * @return whether the project did not use the jar before
+     */
+    boolean usedBy(String project) {
+        return projects.add(project);
+    }
+}
@@ -0,0 +1,43 @@
+package nl.jiankai.refactoring.core.project.typesolver;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+
+import java.util.Objects;
+
+/**
+ * A per-project view on a type solver that is shared between projects. A type solver can only have a single parent,
+ * so every {@link com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver} gets its own view
+ * while the (expensive) pooled solver behind it is reused.
+ */
+final class SharedTypeSolver implements TypeSolver {
+    private final TypeSolver delegate;
+    private TypeSolver parent;
+
+    SharedTypeSolver(TypeSolver delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        Objects.requireNonNull(parent);
+        if (this.parent != null) {
+            throw new IllegalStateException("This TypeSolver already has a parent.");
+        }
+        if (parent == this) {
+            throw new IllegalStateException("The parent of this TypeSolver cannot be itself.");
+        }
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        return delegate.tryToSolveType(name);
+    }
+}
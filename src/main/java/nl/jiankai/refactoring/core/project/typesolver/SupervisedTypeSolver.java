@@ -0,0 +1,24 @@
+package nl.jiankai.refactoring.core.project.typesolver;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import nl.jiankai.refactoring.core.project.resolution.ResolutionBudget;
+
+/**
+ * The root type solver of a project. Every type lookup of the symbol solver passes through it, which makes it the
+ * place where a resolution that ran out of its {@link ResolutionBudget} is aborted.
+ */
+public final class SupervisedTypeSolver extends CombinedTypeSolver {
+
+    public SupervisedTypeSolver(TypeSolver... elements) {
+        super(elements);
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        ResolutionBudget.checkpoint();
+        return super.tryToSolveType(name);
+    }
+}
@@ -0,0 +1,177 @@
+package nl.jiankai.refactoring.core.project.typesolver;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
+import nl.jiankai.refactoring.configuration.CacheLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A process wide registry of the JDK type solver and of opened jars. Opening and indexing a jar is expensive, and the
+ * dependents of a library share many of their dependency jars, so every jar is only opened once (as long as it stays
+ * in the pool) and shared by all the projects that have it on their classpath, whatever the rest of their classpath is.
+ * <p>
+ * Jars are identified by their path, size and modification time, so a jar that is replaced on disk is opened again.
+ * Every project gets its own {@link JarView} on a pooled jar, so the declarations of the jar solve their super types on
+ * the classpath of that project. The pool is bounded and evicts the least recently used jar once it is full. Projects
+ * that already use an evicted jar keep their view on it.
+ */
+public final class TypeSolverRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TypeSolverRegistry.class);
+    private static final TypeSolverRegistry INSTANCE = new TypeSolverRegistry(ApplicationConfiguration.typeSolverPoolSize());
+    private final Map<JarKey, FutureTask<PooledJar>> jars;
+    private final TypeSolver jdkTypeSolver;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private TypeSolverRegistry(int maximumJars) {
+        this.jars = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<JarKey, FutureTask<PooledJar>> eldest) {
+                if (size() > maximumJars) {
+                    evictions.incrementAndGet();
+                    LOGGER.debug("Evicting jar '{}' from the type solver pool", eldest.getKey().path());
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.jdkTypeSolver = createJdkTypeSolver();
+    }
+
+    public static TypeSolverRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return a type solver for the JDK classes that can be added to a single {@link com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver}
+     */
+    public TypeSolver jdkTypeSolver() {
+        return new SharedTypeSolver(jdkTypeSolver);
+    }
+
+    /**
+     * Gets views on the pooled library snapshots and jars of a project, opening those that are not pooled yet. The
+     * snapshots come before the jars, so they take precedence over the copies of the libraries among the jars.
+     *
+     * @param project   the root directory of the project
+     * @param jars      the dependency jars of the project
+     * @param snapshots the library snapshots of the project
+     * @return type solvers for the snapshots and jars in classpath order, that can be added to a single {@link com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver}
+     * @throws IOException when one of the jars or snapshots could not be opened
+     */
+    public List<TypeSolver> classpathTypeSolvers(String project, List<File> jars, List<File> snapshots) throws IOException {
+        List<TypeSolver> typeSolvers = new ArrayList<>();
+        for (File snapshot : snapshots) {
+            typeSolvers.add(new JarView(pooledJar(JarKey.of(snapshot), project)));
+        }
+        for (File jar : jars) {
+            typeSolvers.add(new JarView(pooledJar(JarKey.of(jar), project)));
+        }
+        return typeSolvers;
+    }
+
+    /**
+     * Only the first lookup of a jar by a project is counted, so the hits are the jars one project reused from another
+     */
+    private PooledJar pooledJar(JarKey key, String project) throws IOException {
+        FutureTask<PooledJar> jar;
+        boolean created = false;
+
+        synchronized (jars) {
+            jar = jars.get(key);
+            if (jar == null) {
+                jar = new FutureTask<>(() -> {
+                    LOGGER.debug("Opening jar '{}'", key.path());
+                    return PooledJar.open(Path.of(key.path()));
+                });
+                jars.put(key, jar);
+                created = true;
+            }
+        }
+
+        if (created) {
+            jar.run();
+        }
+
+        PooledJar pooledJar;
+        try {
+            pooledJar = jar.get();
+        } catch (ExecutionException e) {
+            synchronized (jars) {
+                jars.remove(key, jar);
+            }
+            throw new IOException("Could not open jar '%s'".formatted(key.path()), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while opening jar '%s'".formatted(key.path()), e);
+        }
+
+        if (pooledJar.usedBy(project)) {
+            if (created) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+        }
+        return pooledJar;
+    }
+
+    public Statistics statistics() {
+        synchronized (jars) {
+            return new Statistics(hits.get(), misses.get(), evictions.get(), jars.size());
+        }
+    }
+
+    private static TypeSolver createJdkTypeSolver() {
+        if (ApplicationConfiguration.indexedJdkTypeSolver()) {
+            try {
+                return JdkTypeSolver.create(Path.of(CacheLocation.JDK_INDEX));
+            } catch (IOException e) {
+                LOGGER.warn("Could not index the JDK, falling back to solving its types through reflection", e);
+            }
+        }
+
+        return new ReflectionTypeSolver();
+    }
+
+    private record JarKey(String path, long size, long lastModified) {
+        static JarKey of(File jar) {
+            File file = jar.getAbsoluteFile();
+            return new JarKey(file.toPath().normalize().toString(), file.length(), file.lastModified());
+        }
+    }
+
+    /**
+     * @param hits       the number of times a project used a jar that another project had opened already
+     * @param misses     the number of times a project had to open a jar
+     * @param evictions  the number of jars that were evicted from the pool
+     * @param pooledJars the number of jars in the pool
+     */
+    public record Statistics(long hits, long misses, long evictions, int pooledJars) {
+        /**
+         * @return the fraction of the jars on the classpath of the projects that was shared with an earlier project
+         */
+        public double hitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        @Override
+        public String toString() {
+            return "%s hits, %s misses (%.1f%% of the jars shared between projects), %s evictions, %s jars pooled".formatted(hits, misses, hitRate() * 100, evictions, pooledJars);
+        }
+    }
+}
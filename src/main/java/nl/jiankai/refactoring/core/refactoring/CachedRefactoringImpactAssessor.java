@@ -6,22 +6,42 @@ import nl.jiankai.refactoring.configuration.CacheLocation;
 import nl.jiankai.refactoring.core.project.Project;
 import nl.jiankai.refactoring.core.project.ProjectListener;
 import nl.jiankai.refactoring.core.project.dependencymanagement.ProjectData;
+import nl.jiankai.refactoring.core.project.source.SourceRootIndexCache;
 import nl.jiankai.refactoring.core.storage.api.CacheService;
 import nl.jiankai.refactoring.core.storage.api.Identifiable;
 import nl.jiankai.refactoring.core.storage.filestorage.MultiFileCacheService;
 import nl.jiankai.refactoring.serialisation.JacksonSerializationService;
+import nl.jiankai.refactoring.util.ConcurrencyUtil;
+import nl.jiankai.refactoring.util.HashingUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
+/**
+ * Caches the impact per project. Evicting the cache of a project starts a new generation of the project, and impacts
+ * that were assessed in an earlier generation are not written back, so an assessment that was in flight during the
+ * eviction can not bring the evicted impact back. Writes and evictions exclude each other through a read-write lock.
+ */
 public class CachedRefactoringImpactAssessor implements RefactoringImpactAssessor, ProjectListener<Project> {
     private static final Logger LOGGER = LoggerFactory.getLogger(CachedRefactoringImpactAssessor.class);
     private RefactoringImpactAssessor refactoringImpactAssessor;
-    private CacheService<RefactoringResult> refactoringCacheService;
+    private final Map<String, CacheService<RefactoringResult>> refactoringCacheServices = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final ReadWriteLock evictionLock = new ReentrantReadWriteLock();
+    private final Map<RefactoringKey, CompletableFuture<List<RefactoringImpact>>> computations = new ConcurrentHashMap<>();
     private ApplicationConfiguration applicationConfiguration;
     private ProjectsToScan projectsToScan;
 
@@ -31,82 +51,406 @@ public class CachedRefactoringImpactAssessor implements RefactoringImpactAssesso
         }
         this.projectsToScan = new ProjectsToScan();
         this.refactoringImpactAssessor = refactoringImpactAssessor;
-        this.refactoringCacheService = new MultiFileCacheService<>(CacheLocation.REFACTORING_IMPACT, new JacksonSerializationService(), RefactoringResult.class);
+        removeUnscopedEntries();
     }
 
     @Override
     public ImpactAssessment assesImpact(RefactoringData refactoringData) {
-        Map<ProjectData, List<RefactoringImpact>> impacts = projectsToScan
-                .projects()
-                .stream()
-                .map(Project::getProjectVersion)
-                .map(project -> new ProjectImpactInfo(project, refactoringData, assesImpact(project, refactoringData)))
-                .collect(Collectors.toMap(ProjectImpactInfo::projectData, ProjectImpactInfo::refactoringImpacts));
+        return assesImpact(List.of(refactoringData)).get(refactoringData);
+    }
+
+    /**
+     * Assesses the projects with at most {@link ApplicationConfiguration#impactProjectThreads()} projects at the same
+     * time. Only the refactorings whose impact on a project is not cached yet are assessed, all of them at once.
+     */
+    @Override
+    public Map<RefactoringData, ImpactAssessment> assesImpact(Collection<RefactoringData> refactorings) {
+        Map<RefactoringData, Map<ProjectData, List<RefactoringImpact>>> impacts = new LinkedHashMap<>();
+        Map<RefactoringData, RefactoringStatisticsAccumulator> statistics = new LinkedHashMap<>();
+        for (RefactoringData refactoringData : refactorings) {
+            impacts.put(refactoringData, new ConcurrentHashMap<>());
+            statistics.put(refactoringData, new RefactoringStatisticsAccumulator());
+        }
+        ConcurrencyUtil.forEach(projectsToScan.projects(), ApplicationConfiguration.impactProjectThreads(), project -> {
+            ProjectData projectData = project.getProjectVersion();
+            assesImpact(projectData, refactorings).forEach((refactoringData, projectImpacts) -> {
+                impacts.get(refactoringData).put(projectData, projectImpacts);
+                statistics.get(refactoringData).add(projectData, projectImpacts);
+            });
+        });
+
+        Map<RefactoringData, ImpactAssessment> impactAssessments = new LinkedHashMap<>();
+        for (RefactoringData refactoringData : refactorings) {
+            impactAssessments.put(refactoringData, new ImpactAssessment(new HashMap<>(impacts.get(refactoringData)), statistics.get(refactoringData).statistics()));
+        }
+        return impactAssessments;
+    }
+
+    /**
+     * Concurrent misses on the same {@link RefactoringKey} are assessed once: the first caller computes the impact and
+     * the other callers wait for its result instead of assessing the project again
+     */
+    @Override
+    public Map<RefactoringData, List<RefactoringImpact>> assesImpact(ProjectData projectData, Collection<RefactoringData> refactorings) {
+        long generation = generation(projectData.pathToProject()).get();
+        ProjectState projectState = projectState(projectData);
+        Map<RefactoringData, List<RefactoringImpact>> impacts = new LinkedHashMap<>();
+        Map<RefactoringData, CompletableFuture<List<RefactoringImpact>>> claimedComputations = new LinkedHashMap<>();
+        Map<RefactoringData, CompletableFuture<List<RefactoringImpact>>> sharedComputations = new LinkedHashMap<>();
+        for (RefactoringData refactoringData : refactorings) {
+            Optional<List<RefactoringImpact>> cachedImpacts = cachedResult(projectData, refactoringData)
+                    .filter(refactoringResult -> isUpToDate(refactoringResult, projectState))
+                    .map(RefactoringResult::refactoringResults);
+            impacts.put(refactoringData, cachedImpacts.orElse(null));
+            if (cachedImpacts.isEmpty()) {
+                CompletableFuture<List<RefactoringImpact>> computation = new CompletableFuture<>();
+                CompletableFuture<List<RefactoringImpact>> inFlightComputation = computations.putIfAbsent(createRefactoringKey(projectData, refactoringData), computation);
+                if (inFlightComputation == null) {
+                    claimedComputations.put(refactoringData, computation);
+                } else {
+                    sharedComputations.put(refactoringData, inFlightComputation);
+                }
+            }
+        }
 
-        return new ImpactAssessment(impacts, RefactoringStatisticsGenerator.compute(impacts));
+        if (!claimedComputations.isEmpty()) {
+            compute(projectData, generation, projectState, claimedComputations, refactorings.size());
+        }
+        if (!sharedComputations.isEmpty()) {
+            LOGGER.info("Waiting for {} refactorings that are already being computed for project {}", sharedComputations.size(), projectData);
+        }
+        claimedComputations.forEach((refactoringData, computation) -> impacts.put(refactoringData, await(computation)));
+        sharedComputations.forEach((refactoringData, computation) -> impacts.put(refactoringData, await(computation)));
+        return impacts;
     }
 
     @Override
     public List<RefactoringImpact> assesImpact(ProjectData projectData, RefactoringData refactoringData) {
-        final RefactoringKey refactoringKey = createRefactoringKey(projectData, refactoringData);
-        if (eligibleForCache(projectData)) {
-            LOGGER.info("Trying to fetch '{}' from cache..", refactoringKey);
-            Optional<RefactoringResult> refactoringResult = refactoringCacheService.get(refactoringKey.toString());
+        return assesImpact(projectData, List.of(refactoringData)).get(refactoringData);
+    }
+
+    /**
+     * A computation that finished between the cache lookup and claiming the key has cached its result already, so
+     * the cache is checked again before the claimed refactorings are assessed. Impacts cached at another state of the
+     * project are only assessed again for the files that changed since.
+     */
+    private void compute(ProjectData projectData, long generation, ProjectState projectState, Map<RefactoringData, CompletableFuture<List<RefactoringImpact>>> claimedComputations, int refactorings) {
+        try {
+            List<RefactoringData> uncachedRefactorings = new ArrayList<>();
+            Map<ProjectState, Map<RefactoringData, List<RefactoringImpact>>> outdatedImpactsByState = new HashMap<>();
+            claimedComputations.forEach((refactoringData, computation) -> {
+                Optional<RefactoringResult> refactoringResult = cachedResult(projectData, refactoringData);
+                if (refactoringResult.isPresent() && isUpToDate(refactoringResult.get(), projectState)) {
+                    computation.complete(refactoringResult.get().refactoringResults());
+                } else if (refactoringResult.isPresent() && refactoringResult.get().projectState() != null && refactoringResult.get().projectState().treeId() != null) {
+                    outdatedImpactsByState
+                            .computeIfAbsent(refactoringResult.get().projectState(), state -> new LinkedHashMap<>())
+                            .put(refactoringData, refactoringResult.get().refactoringResults());
+                } else {
+                    uncachedRefactorings.add(refactoringData);
+                }
+            });
 
-            return refactoringResult.orElseGet(() -> {
-                LOGGER.info("Could not find project {} in the cache. The refactoring impact will be recomputed again.", projectData);
-                return new RefactoringResult(refactoringKey, computeRefactoringImpactsAndTryCache(projectData, refactoringData));
-            }).refactoringResults;
-        } else {
-            return computeRefactoringImpactsAndTryCache(projectData, refactoringData);
+            outdatedImpactsByState.forEach((outdatedState, outdatedImpacts) -> {
+                Optional<Set<Path>> changedFiles = changedFiles(projectData.pathToProject(), outdatedState, projectState);
+                if (changedFiles.isPresent()) {
+                    reassess(projectData, generation, projectState, outdatedImpacts, changedFiles.get(), claimedComputations);
+                } else {
+                    uncachedRefactorings.addAll(outdatedImpacts.keySet());
+                }
+            });
+
+            if (!uncachedRefactorings.isEmpty()) {
+                LOGGER.info("{} out of {} refactorings are not cached for project {} and will be computed", uncachedRefactorings.size(), refactorings, projectData);
+                refactoringImpactAssessor.assesImpact(projectData, uncachedRefactorings).forEach((refactoringData, refactoringImpacts) -> {
+                    cacheIfNeeded(projectData, generation, projectState, refactoringData, refactoringImpacts);
+                    claimedComputations.get(refactoringData).complete(refactoringImpacts);
+                });
+            }
+        } catch (RuntimeException e) {
+            claimedComputations.values().forEach(computation -> computation.completeExceptionally(e));
+        } finally {
+            claimedComputations.forEach((refactoringData, computation) -> {
+                computation.completeExceptionally(new IllegalStateException("The impact of '%s' on project %s was not assessed".formatted(refactoringData.fullyQualifiedSignature(), projectData)));
+                computations.remove(createRefactoringKey(projectData, refactoringData), computation);
+            });
         }
     }
+
+    /**
+     * Keeps the impact on the unchanged files and replaces the impact on the changed files. A change in one file can
+     * change how calls in another file resolve, for example when a class hierarchy changes, which is not detected.
+     */
+    private void reassess(ProjectData projectData, long generation, ProjectState projectState, Map<RefactoringData, List<RefactoringImpact>> outdatedImpacts, Set<Path> changedFiles, Map<RefactoringData, CompletableFuture<List<RefactoringImpact>>> claimedComputations) {
+        LOGGER.info("{} files of project {} changed since the impact of {} refactorings was computed and will be assessed again", changedFiles.size(), projectData, outdatedImpacts.size());
+        Map<RefactoringData, List<RefactoringImpact>> changedImpacts = changedFiles.isEmpty()
+                ? Map.of()
+                : refactoringImpactAssessor.assesImpact(projectData, outdatedImpacts.keySet(), changedFiles);
+        outdatedImpacts.forEach((refactoringData, outdatedRefactoringImpacts) -> {
+            List<RefactoringImpact> refactoringImpacts = new ArrayList<>();
+            outdatedRefactoringImpacts
+                    .stream()
+                    .filter(refactoringImpact -> !changedFiles.contains(Path.of(refactoringImpact.filePath()).toAbsolutePath().normalize()))
+                    .forEach(refactoringImpacts::add);
+            refactoringImpacts.addAll(changedImpacts.getOrDefault(refactoringData, List.of()));
+            cacheIfNeeded(projectData, generation, projectState, refactoringData, refactoringImpacts);
+            claimedComputations.get(refactoringData).complete(refactoringImpacts);
+        });
+    }
+
+    /**
+     * The files that changed between two states of a project are the files that changed between their trees, and the
+     * files that were or are uncommitted and changed since. Only a changed build file that just changes the version of
+     * the project keeps the dependencies the calls resolve against.
+     *
+     * @return the changed files, empty when the whole project has to be assessed again
+     */
+    private static Optional<Set<Path>> changedFiles(File projectPath, ProjectState outdatedState, ProjectState projectState) {
+        Optional<Set<Path>> committedChanges = outdatedState.treeId().equals(projectState.treeId())
+                ? Optional.of(Set.of())
+                : SourceRootIndexCache.changedFiles(projectPath, outdatedState.treeId(), projectState.treeId());
+        if (committedChanges.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Set<Path> changedFiles = new HashSet<>(committedChanges.get());
+        Set<String> uncommittedFiles = new HashSet<>(outdatedState.uncommittedFiles().keySet());
+        uncommittedFiles.addAll(projectState.uncommittedFiles().keySet());
+        for (String file : uncommittedFiles) {
+            if (!Objects.equals(outdatedState.uncommittedFiles().get(file), projectState.uncommittedFiles().get(file))) {
+                changedFiles.add(Path.of(file));
+            }
+        }
+
+        for (Path changedFile : changedFiles) {
+            if (affectsClasspath(changedFile) && !onlyVersionChanged(projectPath, changedFile, outdatedState, projectState)) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(changedFiles);
+    }
+
+    /**
+     * A build file only changed the version of the project when replacing the old version by the new one in the build
+     * file of the outdated tree gives the build file on disk
+     */
+    private static boolean onlyVersionChanged(File projectPath, Path buildFile, ProjectState outdatedState, ProjectState projectState) {
+        if (outdatedState.version() == null || outdatedState.uncommittedFiles().containsKey(buildFile.toString()) || !Files.isRegularFile(buildFile)) {
+            return false;
+        }
+
+        try {
+            String buildFileContent = Files.readString(buildFile);
+            return SourceRootIndexCache
+                    .fileContent(projectPath, outdatedState.treeId(), buildFile)
+                    .map(outdatedContent -> outdatedContent.replace(outdatedState.version(), projectState.version()).equals(buildFileContent))
+                    .orElse(false);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read build file '{}'", buildFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * A changed build file may change the dependencies the calls resolve against, so the whole project is assessed again
+     */
+    private static boolean affectsClasspath(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.equals("pom.xml") || fileName.endsWith(".gradle") || fileName.endsWith(".gradle.kts");
+    }
+
+    private static List<RefactoringImpact> await(CompletableFuture<List<RefactoringImpact>> computation) {
+        try {
+            return computation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private Optional<RefactoringResult> cachedResult(ProjectData project, RefactoringData refactoringData) {
+        if (!eligibleForCache(project)) {
+            return Optional.empty();
+        }
+
+        evictionLock.readLock().lock();
+        try {
+            return refactoringCacheService(project.pathToProject()).get(createRefactoringKey(project, refactoringData).toString());
+        } finally {
+            evictionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Impacts of projects that are not a git repository can not be compared to the checked out tree and are always used.
+     * Impacts on a git repository are up to date when both the checked out tree and the uncommitted files are the same.
+     */
+    private static boolean isUpToDate(RefactoringResult refactoringResult, ProjectState projectState) {
+        if (projectState.treeId() == null) {
+            return true;
+        }
+
+        ProjectState cachedState = refactoringResult.projectState();
+        return cachedState != null
+                && projectState.treeId().equals(cachedState.treeId())
+                && projectState.uncommittedFiles().equals(cachedState.uncommittedFiles());
+    }
+
+    private static ProjectState projectState(ProjectData projectData) {
+        File projectPath = projectData.pathToProject();
+        Optional<String> treeId = SourceRootIndexCache.treeId(projectPath);
+        Map<String, String> uncommittedFiles = new TreeMap<>();
+        if (treeId.isPresent()) {
+            SourceRootIndexCache.uncommittedFiles(projectPath).orElse(Set.of()).forEach(file -> uncommittedFiles.put(file.toString(), stamp(file)));
+        }
+        return new ProjectState(projectData.coordinate().version(), treeId.orElse(null), uncommittedFiles);
+    }
+
+    private static String stamp(Path file) {
+        File uncommittedFile = file.toFile();
+        return uncommittedFile.exists() ? uncommittedFile.length() + ":" + uncommittedFile.lastModified() : "deleted";
+    }
+
     private boolean eligibleForCache(ProjectData project) {
 //        return !project.coordinate().version().endsWith("-SNAPSHOT");
         return true;
     }
 
-    private void cacheIfNeeded(ProjectData project, RefactoringData refactoringData, List<RefactoringImpact> refactoringImpacts) {
-        if (eligibleForCache(project)) {
-            refactoringCacheService.write(new RefactoringResult(createRefactoringKey(project, refactoringData), refactoringImpacts));
+    /**
+     * @param generation the generation of the project when the assessment started
+     */
+    private void cacheIfNeeded(ProjectData project, long generation, ProjectState projectState, RefactoringData refactoringData, List<RefactoringImpact> refactoringImpacts) {
+        if (!eligibleForCache(project)) {
+            return;
         }
-    }
 
-    private List<RefactoringImpact> computeRefactoringImpactsAndTryCache(ProjectData project, RefactoringData refactoringData) {
-        List<RefactoringImpact> refactoringImpacts = refactoringImpactAssessor.assesImpact(project, refactoringData);
-        cacheIfNeeded(project, refactoringData, refactoringImpacts);
-        return refactoringImpacts;
+        evictionLock.readLock().lock();
+        try {
+            if (generation(project.pathToProject()).get() != generation) {
+                LOGGER.info("The cache of project {} was evicted while '{}' was assessed, the impact is not cached", project, refactoringData.fullyQualifiedSignature());
+                return;
+            }
+            refactoringCacheService(project.pathToProject()).write(new RefactoringResult(createRefactoringKey(project, refactoringData), projectState, refactoringImpacts));
+        } finally {
+            evictionLock.readLock().unlock();
+        }
     }
 
+    /**
+     * The cached impact on a git repository records the state it was computed at and is brought up to date when it is
+     * needed. Other projects may have changed since they were last seen, so their cached impact is evicted. The cached
+     * impact on all other projects is kept.
+     */
     @Override
     public void onAdded(ProjectEvent<Project> event) {
-        clearCache();
+        File projectPath = event.affected().getLocalPath();
+        if (SourceRootIndexCache.treeId(projectPath).isEmpty()) {
+            clearCache(projectPath);
+        }
     }
 
     @Override
     public void onRemoved(ProjectEvent<Project> event) {
-        clearCache();
+        clearCache(event.affected().getLocalPath());
     }
 
-    private void clearCache() {
-        refactoringCacheService.clear();
+    private void clearCache(File projectPath) {
+        String cacheLocation = cacheLocation(projectPath);
+        evictionLock.writeLock().lock();
+        try {
+            generation(projectPath).incrementAndGet();
+            CacheService<RefactoringResult> refactoringCacheService = refactoringCacheServices.remove(cacheLocation);
+            if (refactoringCacheService == null) {
+                refactoringCacheService = new MultiFileCacheService<>(cacheLocation, new JacksonSerializationService(), RefactoringResult.class);
+            }
+            refactoringCacheService.clear();
+        } finally {
+            evictionLock.writeLock().unlock();
+        }
+    }
+
+    private AtomicLong generation(File projectPath) {
+        return generations.computeIfAbsent(cacheLocation(projectPath), cacheLocation -> new AtomicLong());
+    }
+
+    /**
+     * The impact used to be cached in a single directory for all projects, those entries can not be evicted per
+     * project and are removed
+     */
+    private static void removeUnscopedEntries() {
+        Path cacheDirectory = Path.of(CacheLocation.REFACTORING_IMPACT);
+        if (!Files.isDirectory(cacheDirectory)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            List<Path> unscopedEntries = files.filter(Files::isRegularFile).toList();
+            for (Path unscopedEntry : unscopedEntries) {
+                Files.deleteIfExists(unscopedEntry);
+            }
+            if (!unscopedEntries.isEmpty()) {
+                LOGGER.info("Removed {} refactoring impact entries that were not cached per project", unscopedEntries.size());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not remove the refactoring impact entries in '{}' that were not cached per project", cacheDirectory, e);
+        }
+    }
+
+    /**
+     * The impact is cached per project location rather than per {@link ProjectData}, because the coordinate of a
+     * removed project can no longer be read from its pom file
+     */
+    private CacheService<RefactoringResult> refactoringCacheService(File projectPath) {
+        return refactoringCacheServices.computeIfAbsent(cacheLocation(projectPath),
+                cacheLocation -> new MultiFileCacheService<>(cacheLocation, new JacksonSerializationService(), RefactoringResult.class));
+    }
+
+    private static String cacheLocation(File projectPath) {
+        try {
+            return CacheLocation.REFACTORING_IMPACT + File.separator + HashingUtil.md5Hash(projectLocation(projectPath));
+        } catch (NoSuchAlgorithmException e) {
+            LOGGER.warn("Couldn't hash the project path due to the hashing algorithm not being present", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String projectLocation(File projectPath) {
+        return projectPath.getAbsoluteFile().toPath().normalize().toString();
     }
 
     private RefactoringKey createRefactoringKey(ProjectData project, RefactoringData refactoringData) {
-        return new RefactoringKey(project, refactoringData.fullyQualifiedSignature(), refactoringData.refactoringType());
+        return new RefactoringKey(projectLocation(project.pathToProject()), refactoringData.fullyQualifiedSignature(), refactoringData.refactoringType());
     }
 
-    private record RefactoringKey(ProjectData project, String fullyQualifiedSignature,
+    /**
+     * The key does not contain the version of the project, so the impact cached before a version bump is brought up to
+     * date rather than computed again
+     *
+     * @param project the location of the project
+     */
+    private record RefactoringKey(String project, String fullyQualifiedSignature,
                                   RefactoringType refactoringType) {
 
         @Override
         public String toString() {
-            return project.toString() + "-" + fullyQualifiedSignature + "-" + refactoringType;
+            return project + "-" + fullyQualifiedSignature + "-" + refactoringType;
         }
     }
 
+    /**
+     * The state of a project an impact was computed at
+     *
+     * @param version          the version of the project
+     * @param treeId           the checked out tree, null when the project is not a git repository
+     * @param uncommittedFiles the length and modification time of the files that differ from the checked out tree
+     */
+    private record ProjectState(String version, String treeId, Map<String, String> uncommittedFiles) {
+    }
+
     @JsonIgnoreProperties(value = {"id"})
-    private record RefactoringResult(RefactoringKey refactoringKey,
+    private record RefactoringResult(RefactoringKey refactoringKey, ProjectState projectState,
                                      List<RefactoringImpact> refactoringResults) implements Identifiable {
 
         @Override
@@ -2,7 +2,13 @@ package nl.jiankai.refactoring.core.refactoring;
 
 import nl.jiankai.refactoring.core.project.dependencymanagement.ProjectData;
 
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public interface RefactoringImpactAssessor {
     /**
@@ -13,4 +19,45 @@ public interface RefactoringImpactAssessor {
     ImpactAssessment assesImpact(RefactoringData refactoringData);
 
     List<RefactoringImpact> assesImpact(ProjectData projectData, RefactoringData refactoringData);
+
+    /**
+     * Asses the impact of several performed refactoring actions, by default one after another
+     * @param refactorings all data related to the refactoring actions
+     * @return the impact of every change to all its dependents
+     */
+    default Map<RefactoringData, ImpactAssessment> assesImpact(Collection<RefactoringData> refactorings) {
+        Map<RefactoringData, ImpactAssessment> impactAssessments = new LinkedHashMap<>();
+        refactorings.forEach(refactoringData -> impactAssessments.put(refactoringData, assesImpact(refactoringData)));
+        return impactAssessments;
+    }
+
+    /**
+     * Asses the impact of several performed refactoring actions on a single project, by default one after another
+     * @param projectData the project to asses the impact on
+     * @param refactorings all data related to the refactoring actions
+     * @return the impact of every change to the project
+     */
+    default Map<RefactoringData, List<RefactoringImpact>> assesImpact(ProjectData projectData, Collection<RefactoringData> refactorings) {
+        Map<RefactoringData, List<RefactoringImpact>> impacts = new LinkedHashMap<>();
+        refactorings.forEach(refactoringData -> impacts.put(refactoringData, assesImpact(projectData, refactoringData)));
+        return impacts;
+    }
+
+    /**
+     * Asses the impact of several performed refactoring actions on some files of a single project, by default by
+     * assessing the whole project and leaving out the impact on other files
+     * @param projectData the project to asses the impact on
+     * @param refactorings all data related to the refactoring actions
+     * @param files the absolute paths of the files to asses the impact on
+     * @return the impact of every change to the files
+     */
+    default Map<RefactoringData, List<RefactoringImpact>> assesImpact(ProjectData projectData, Collection<RefactoringData> refactorings, Collection<Path> files) {
+        Set<Path> normalizedFiles = files.stream().map(file -> file.toAbsolutePath().normalize()).collect(Collectors.toSet());
+        Map<RefactoringData, List<RefactoringImpact>> impacts = assesImpact(projectData, refactorings);
+        impacts.replaceAll((refactoringData, refactoringImpacts) -> refactoringImpacts
+                .stream()
+                .filter(refactoringImpact -> normalizedFiles.contains(Path.of(refactoringImpact.filePath()).toAbsolutePath().normalize()))
+                .toList());
+        return impacts;
+    }
 }
@@ -0,0 +1,42 @@
+package nl.jiankai.refactoring.core.refactoring;
+
+import nl.jiankai.refactoring.core.project.dependencymanagement.ProjectData;
+
+import java.util.*;
+
+/**
+ * Accumulates the statistics of a refactoring project by project, so the impact on a project can be counted as soon
+ * as the project has been assessed. Projects may be added from multiple threads.
+ */
+public final class RefactoringStatisticsAccumulator {
+    private final List<RefactoringStatistics.Ranking> impactsPerProject = new ArrayList<>();
+    private final Map<String, Integer> impactsPerFile = new HashMap<>();
+    private long projectsImpacted;
+
+    /**
+     * @param project            the assessed project
+     * @param refactoringImpacts the impact of the refactoring on the project
+     */
+    public synchronized void add(ProjectData project, List<RefactoringImpact> refactoringImpacts) {
+        impactsPerProject.add(new RefactoringStatistics.Ranking(project.toString(), refactoringImpacts.size()));
+        for (RefactoringImpact refactoringImpact : refactoringImpacts) {
+            impactsPerFile.merge(refactoringImpact.filePath(), 1, Integer::sum);
+        }
+        if (!refactoringImpacts.isEmpty()) {
+            projectsImpacted++;
+        }
+    }
+
+    /**
+     * @return the statistics of the projects added so far
+     */
+    public synchronized RefactoringStatistics statistics() {
+        return new RefactoringStatistics(ranked(impactsPerProject), ranked(impactsPerFile.entrySet().stream().map(entry -> new RefactoringStatistics.Ranking(entry.getKey(), entry.getValue())).toList()), projectsImpacted);
+    }
+
+    private static List<RefactoringStatistics.Ranking> ranked(List<RefactoringStatistics.Ranking> rankings) {
+        List<RefactoringStatistics.Ranking> ranked = new ArrayList<>(rankings);
+        ranked.sort(Comparator.comparingInt(RefactoringStatistics.Ranking::value).reversed());
+        return ranked;
+    }
+}
@@ -4,22 +4,31 @@ import com.github.javaparser.Range;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.nodeTypes.NodeWithName;
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
+import nl.jiankai.refactoring.util.ConcurrencyUtil;
 import nl.jiankai.refactoring.util.JavaParserUtil;
 import nl.jiankai.refactoring.core.project.Project;
 import nl.jiankai.refactoring.core.project.dependencymanagement.ProjectData;
+import nl.jiankai.refactoring.core.project.index.CallSite;
+import nl.jiankai.refactoring.core.project.index.CallSiteIndex;
+import nl.jiankai.refactoring.core.project.index.CallSiteSegment;
+import nl.jiankai.refactoring.core.project.resolution.MethodResolutionMemo;
+import nl.jiankai.refactoring.core.project.source.ProjectSources;
 import nl.jiankai.refactoring.core.refactoring.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.toMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class JavaParserRefactoringImpactAssessor implements RefactoringImpactAssessor {
     private static final Logger LOGGER = LoggerFactory.getLogger(JavaParserRefactoringImpactAssessor.class);
     private Set<RefactoringType> supportedRefactoringTypes = Set.of(RefactoringType.METHOD_SIGNATURE, RefactoringType.METHOD_NAME);
+    private final Set<RefactoringData> reportedUnsupportedRefactorings = ConcurrentHashMap.newKeySet();
     private ProjectsToScan projectsToScan;
 
     public JavaParserRefactoringImpactAssessor() {
@@ -28,68 +37,186 @@ public class JavaParserRefactoringImpactAssessor implements RefactoringImpactAss
 
     @Override
     public ImpactAssessment assesImpact(RefactoringData refactoringData) {
-        if (!supportedRefactoringTypes.contains(refactoringData.refactoringType())) {
-            throw new UnsupportedOperationException("Assessing impact for refactoring type '%s' is not supported yet".formatted(refactoringData.refactoringType()));
-        }
-
-        LOGGER.info("Computing refactoring impact for all registered projects");
-
-        Map<ProjectData, Collection<CompilationUnit>> projects = getAllProjects();
-        Map<ProjectData, List<RefactoringImpact>> impacts = projects
-                .entrySet()
-                .parallelStream()
-                .collect(
-                        toMap(
-                                Map.Entry::getKey,
-                                entry -> entry
-                                        .getValue()
-                                        .stream()
-                                        .flatMap(cu -> collectRefactoringImpact(cu, refactoringData))
-                                        .toList()
-                        ));
+        return assesImpact(List.of(refactoringData)).get(refactoringData);
+    }
 
-        return new ImpactAssessment(impacts, RefactoringStatisticsGenerator.compute(impacts));
+    /**
+     * Assesses all refactorings in a single pass over every file of every registered project
+     */
+    @Override
+    public Map<RefactoringData, ImpactAssessment> assesImpact(Collection<RefactoringData> refactorings) {
+        supportedRefactorings(refactorings);
+        LOGGER.info("Computing refactoring impact of {} refactorings for all registered projects", refactorings.size());
+
+        Map<RefactoringData, Map<ProjectData, List<RefactoringImpact>>> impacts = new LinkedHashMap<>();
+        Map<RefactoringData, RefactoringStatisticsAccumulator> statistics = new LinkedHashMap<>();
+        for (RefactoringData refactoringData : refactorings) {
+            impacts.put(refactoringData, new ConcurrentHashMap<>());
+            statistics.put(refactoringData, new RefactoringStatisticsAccumulator());
+        }
+        List<Project> projects = projectsToScan.projects();
+        AtomicInteger assessed = new AtomicInteger();
+        ConcurrencyUtil.forEach(projects, ApplicationConfiguration.impactProjectThreads(), project -> {
+            ProjectData projectData = project.getProjectVersion();
+            assesImpact(JavaParserUtil.getProjectSources(project), refactorings).forEach((refactoringData, projectImpacts) -> {
+                impacts.get(refactoringData).put(projectData, projectImpacts);
+                statistics.get(refactoringData).add(projectData, projectImpacts);
+            });
+            LOGGER.info("Assessed the refactoring impact on project {} ({}/{})", projectData, assessed.incrementAndGet(), projects.size());
+        });
+
+        LOGGER.info("Peak of syntax trees retained at the same time: {}", JavaParserUtil.peakRetainedAsts());
+        Map<RefactoringData, ImpactAssessment> impactAssessments = new LinkedHashMap<>();
+        for (RefactoringData refactoringData : refactorings) {
+            impactAssessments.put(refactoringData, new ImpactAssessment(new HashMap<>(impacts.get(refactoringData)), statistics.get(refactoringData).statistics()));
+        }
+        return impactAssessments;
     }
 
     @Override
     public List<RefactoringImpact> assesImpact(ProjectData projectData, RefactoringData refactoringData) {
         LOGGER.info("Computing refactoring impact for project {}", projectData);
-        return JavaParserUtil.getProject(projectData.pathToProject())
-                .stream()
-                .flatMap(compilationUnit -> collectRefactoringImpact(compilationUnit, refactoringData))
-                .toList();
+        return assesImpact(JavaParserUtil.getProjectSources(projectData.pathToProject()), List.of(refactoringData)).get(refactoringData);
+    }
+
+    @Override
+    public Map<RefactoringData, List<RefactoringImpact>> assesImpact(ProjectData projectData, Collection<RefactoringData> refactorings) {
+        LOGGER.info("Computing refactoring impact of {} refactorings for project {}", refactorings.size(), projectData);
+        return assesImpact(JavaParserUtil.getProjectSources(projectData.pathToProject()), refactorings);
+    }
+
+    /**
+     * Only parses the given files, the call site index is not used because it covers the whole project
+     */
+    @Override
+    public Map<RefactoringData, List<RefactoringImpact>> assesImpact(ProjectData projectData, Collection<RefactoringData> refactorings, Collection<Path> files) {
+        LOGGER.info("Computing refactoring impact of {} refactorings for {} files of project {}", refactorings.size(), files.size(), projectData);
+        Map<RefactoringData, List<RefactoringImpact>> impacts = withoutImpact(refactorings);
+        impacts.putAll(collectRefactoringImpacts(JavaParserUtil.getProjectSources(projectData.pathToProject()).withJavaFiles(files), supportedRefactorings(refactorings)));
+        return impacts;
+    }
+
+    /**
+     * Looks the impact up in the call site index of the project, or otherwise collects the impact of all refactorings
+     * file by file in a single pass, so only the syntax trees of the files that are being processed are kept in memory
+     *
+     * @return the impact per refactoring, also for the refactorings without any impact
+     */
+    private Map<RefactoringData, List<RefactoringImpact>> assesImpact(ProjectSources projectSources, Collection<RefactoringData> refactorings) {
+        Map<RefactoringData, List<RefactoringImpact>> impacts = withoutImpact(refactorings);
+        List<RefactoringData> supportedRefactorings = supportedRefactorings(refactorings);
+        if (ApplicationConfiguration.callSiteIndex()) {
+            Optional<CallSiteSegment> segment = CallSiteIndex.getInstance().segment(projectSources);
+            if (segment.isPresent()) {
+                supportedRefactorings.forEach(refactoringData -> impacts.put(refactoringData, collectRefactoringImpacts(segment.get(), refactoringData)));
+                return impacts;
+            }
+        }
+
+        impacts.putAll(collectRefactoringImpacts(projectSources, supportedRefactorings));
+        return impacts;
+    }
+
+    /**
+     * Refactorings of a type that is not supported are reported once and left without impact, so they do not fail
+     * the assessment of the other refactorings
+     *
+     * @return the refactorings of a supported type
+     */
+    private List<RefactoringData> supportedRefactorings(Collection<RefactoringData> refactorings) {
+        List<RefactoringData> supportedRefactorings = new ArrayList<>();
+        for (RefactoringData refactoringData : refactorings) {
+            if (supportedRefactoringTypes.contains(refactoringData.refactoringType())) {
+                supportedRefactorings.add(refactoringData);
+            } else if (reportedUnsupportedRefactorings.add(refactoringData)) {
+                LOGGER.warn("Assessing impact for refactoring type '{}' is not supported yet, refactoring of '{}' is skipped", refactoringData.refactoringType(), refactoringData.fullyQualifiedSignature());
+            }
+        }
+        return supportedRefactorings;
     }
 
-    private Map<ProjectData, Collection<CompilationUnit>> getAllProjects() {
-        return projectsToScan
-                .projects()
+    private static Map<RefactoringData, List<RefactoringImpact>> withoutImpact(Collection<RefactoringData> refactorings) {
+        Map<RefactoringData, List<RefactoringImpact>> impacts = new LinkedHashMap<>();
+        refactorings.forEach(refactoringData -> impacts.put(refactoringData, List.of()));
+        return impacts;
+    }
+
+    private Map<RefactoringData, List<RefactoringImpact>> collectRefactoringImpacts(ProjectSources projectSources, Collection<RefactoringData> refactorings) {
+        Map<RefactoringData, List<RefactoringImpact>> impacts = new LinkedHashMap<>();
+        refactorings.forEach(refactoringData -> impacts.put(refactoringData, new ArrayList<>()));
+        Map<String, Set<String>> signaturesByName = new HashMap<>();
+        refactorings.forEach(refactoringData -> signaturesByName.computeIfAbsent(refactoringData.elementName(), name -> new HashSet<>()).add(refactoringData.fullyQualifiedSignature()));
+        JavaParserUtil
+                .extract(projectSources, compilationUnit -> collectRefactoringImpacts(compilationUnit, impacts.keySet(), signaturesByName, projectSources.resolutionMemo()))
+                .forEach(fileImpacts -> fileImpacts.forEach((refactoringData, fileImpact) -> impacts.get(refactoringData).addAll(fileImpact)));
+        LOGGER.debug("Method resolution memo of project '{}': {}", projectSources.projectPath(), projectSources.resolutionMemo().statistics());
+
+        return impacts;
+    }
+
+    /**
+     * Only calls with the element name of a refactoring are resolved when parsing, so the calls of the signature only
+     * count when the element name is the name in the signature
+     */
+    private List<RefactoringImpact> collectRefactoringImpacts(CallSiteSegment segment, RefactoringData refactoringData) {
+        if (!methodName(refactoringData.fullyQualifiedSignature()).equals(refactoringData.elementName())) {
+            return List.of();
+        }
+
+        return segment
+                .callSites(refactoringData.fullyQualifiedSignature())
                 .stream()
-                .collect(toMap(Project::getProjectVersion, JavaParserUtil::getProject));
+                .map(callSite -> toRefactoringImpact(callSite, refactoringData))
+                .toList();
     }
 
-    private Stream<RefactoringImpact> collectRefactoringImpact(CompilationUnit compilationUnit, RefactoringData refactoringData) {
-        if (isMethodRefactoringType(refactoringData.refactoringType())) {
-            return JavaParserUtil
-                    .getMethodUsages(compilationUnit, refactoringData.fullyQualifiedSignature(), refactoringData.elementName())
+    private Map<RefactoringData, List<RefactoringImpact>> collectRefactoringImpacts(CompilationUnit compilationUnit, Collection<RefactoringData> refactorings, Map<String, Set<String>> signaturesByName, MethodResolutionMemo resolutionMemo) {
+        Map<String, List<MethodCallExpr>> methodUsages = JavaParserUtil.getMethodUsages(compilationUnit, signaturesByName, resolutionMemo);
+        Map<RefactoringData, List<RefactoringImpact>> impacts = new HashMap<>();
+        for (RefactoringData refactoringData : refactorings) {
+            List<RefactoringImpact> refactoringImpacts = methodUsages
+                    .getOrDefault(refactoringData.fullyQualifiedSignature(), List.of())
                     .stream()
-                    .map(method -> {
-                        Range range = method.getRange().orElse(Range.range(0, 0, 0, 0));
-                        String filePath = "";
-                        String fileName = "";
-                        if (compilationUnit.getStorage().isPresent()) {
-                            CompilationUnit.Storage storage = compilationUnit.getStorage().get();
-                            filePath = storage.getPath().toAbsolutePath().toString();
-                            fileName = storage.getFileName();
-                        }
-
-                        return new RefactoringImpact(
-                                filePath, fileName, getPackageName(method), getClassName(method), method.getNameAsString(),
-                                new Position(range.begin.column, range.end.column, range.begin.line, range.end.line),
-                                JavaParserUtil.isBreakingChange(method, refactoringData));
-                    });
-        } else {
-            throw new UnsupportedOperationException("Refactoring type '%s' is not supported yet".formatted(refactoringData.refactoringType()));
+                    .filter(method -> method.getNameAsString().equals(refactoringData.elementName()))
+                    .map(method -> toRefactoringImpact(compilationUnit, method, refactoringData))
+                    .toList();
+            if (!refactoringImpacts.isEmpty()) {
+                impacts.put(refactoringData, refactoringImpacts);
+            }
         }
+
+        return impacts;
+    }
+
+    private RefactoringImpact toRefactoringImpact(CompilationUnit compilationUnit, MethodCallExpr method, RefactoringData refactoringData) {
+        Range range = method.getRange().orElse(Range.range(0, 0, 0, 0));
+        String filePath = "";
+        String fileName = "";
+        if (compilationUnit.getStorage().isPresent()) {
+            CompilationUnit.Storage storage = compilationUnit.getStorage().get();
+            filePath = storage.getPath().toAbsolutePath().toString();
+            fileName = storage.getFileName();
+        }
+
+        return new RefactoringImpact(
+                filePath, fileName, getPackageName(method), getClassName(method), method.getNameAsString(),
+                new Position(range.begin.column, range.end.column, range.begin.line, range.end.line),
+                JavaParserUtil.isBreakingChange(method, refactoringData));
+    }
+
+    /**
+     * A renamed method breaks every call, whether a changed signature breaks a call is not decided on the call yet
+     */
+    private RefactoringImpact toRefactoringImpact(CallSite callSite, RefactoringData refactoringData) {
+        Path file = Path.of(callSite.filePath());
+        return new RefactoringImpact(
+                callSite.filePath(), file.getFileName() == null ? "" : file.getFileName().toString(), callSite.packageName(), callSite.className(),
+                refactoringData.elementName(), callSite.position(), refactoringData.refactoringType() == RefactoringType.METHOD_NAME);
+    }
+
+    private static String methodName(String fullyQualifiedSignature) {
+        int parametersStart = fullyQualifiedSignature.indexOf('(');
+        return parametersStart < 0 ? fullyQualifiedSignature : fullyQualifiedSignature.substring(fullyQualifiedSignature.lastIndexOf('.', parametersStart) + 1, parametersStart);
     }
 
     private String getPackageName(Node node) {
@@ -114,11 +241,4 @@ public class JavaParserRefactoringImpactAssessor implements RefactoringImpactAss
         return "";
     }
 
-
-    private boolean isMethodRefactoringType(RefactoringType refactoringType) {
-        return switch (refactoringType) {
-            case METHOD_NAME, METHOD_SIGNATURE -> true;
-            case UNKNOWN -> false;
-        };
-    }
 }
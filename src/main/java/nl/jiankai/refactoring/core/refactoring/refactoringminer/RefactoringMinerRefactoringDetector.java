@@ -1,27 +1,46 @@
 package nl.jiankai.refactoring.core.refactoring.refactoringminer;
 
 import gr.uom.java.xmi.diff.*;
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
 import nl.jiankai.refactoring.core.project.Project;
 import nl.jiankai.refactoring.core.project.git.GitRepository;
 import nl.jiankai.refactoring.core.refactoring.Position;
 import nl.jiankai.refactoring.core.refactoring.Refactoring;
 import nl.jiankai.refactoring.core.refactoring.RefactoringDetector;
 import nl.jiankai.refactoring.core.refactoring.RefactoringType;
+import nl.jiankai.refactoring.util.ConcurrencyUtil;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.refactoringminer.api.GitHistoryRefactoringMiner;
 import org.refactoringminer.api.GitService;
 import org.refactoringminer.api.RefactoringHandler;
 import org.refactoringminer.rm1.GitHistoryRefactoringMinerImpl;
 import org.refactoringminer.util.GitServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
 
 public class RefactoringMinerRefactoringDetector implements RefactoringDetector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefactoringMinerRefactoringDetector.class);
+
     @Override
     public Collection<Refactoring> detectRefactoringBetweenCommit(GitRepository gitRepository, String startCommitId, String endCommitId, Set<RefactoringType> refactoringTypes) {
+        int shards = ApplicationConfiguration.refactoringDetectionShards();
+        if (shards > 1) {
+            return detectRefactoringBetweenCommitSharded(gitRepository, startCommitId, endCommitId, refactoringTypes, shards);
+        }
+
         List<Refactoring> detectedRefactorings = new ArrayList<>();
         GitService gitService = new GitServiceImpl();
         GitHistoryRefactoringMiner gitHistoryRefactoringMiner = new GitHistoryRefactoringMinerImpl();
@@ -30,14 +49,7 @@ public class RefactoringMinerRefactoringDetector implements RefactoringDetector
             gitHistoryRefactoringMiner.detectBetweenCommits(repository, startCommitId, endCommitId, new RefactoringHandler() {
                 @Override
                 public void handle(String commitId, List<org.refactoringminer.api.Refactoring> refactorings) {
-                    detectedRefactorings
-                            .addAll(
-                                    refactorings
-                                            .stream()
-                                            .filter(r -> refactoringTypes.contains(convertRefactoringType(r.getRefactoringType())))
-                                            .map(r -> new Refactoring(commitId, getElementName(r), convertRefactoringType(r.getRefactoringType()), getPackagePath(r), getPosition(r), getFilePath(r)))
-                                            .toList()
-                            );
+                    detectedRefactorings.addAll(convertRefactorings(commitId, refactorings, refactoringTypes));
                 }
             });
 
@@ -47,6 +59,77 @@ public class RefactoringMinerRefactoringDetector implements RefactoringDetector
         }
     }
 
+    /**
+     * Detects the refactorings of the commits with several shards at the same time, each with its own repository
+     * handle. RefactoringMiner reads the files of a commit from the object database instead of checking the commit
+     * out, so the shards can share the repository directory. Every shard takes the next commit that has not been
+     * taken yet, so a shard that runs into large commits does not hold up the others, and the refactorings are
+     * returned in the order of the commits.
+     */
+    private Collection<Refactoring> detectRefactoringBetweenCommitSharded(GitRepository gitRepository, String startCommitId, String endCommitId, Set<RefactoringType> refactoringTypes, int shards) {
+        String repositoryPath = gitRepository.getLocalPath().getAbsolutePath();
+        List<String> commitIds;
+        try (Repository repository = new GitServiceImpl().openRepository(repositoryPath)) {
+            commitIds = commitsBetween(repository, startCommitId, endCommitId);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Something went wrong with the repository '%s'".formatted(gitRepository.getId()), e);
+        }
+
+        LOGGER.info("Detecting refactorings in {} commits of repository '{}' with {} shards", commitIds.size(), gitRepository.getId(), shards);
+        AtomicReferenceArray<List<Refactoring>> refactoringsPerCommit = new AtomicReferenceArray<>(commitIds.size());
+        AtomicInteger nextCommit = new AtomicInteger();
+        ConcurrencyUtil.forEach(IntStream.range(0, shards).boxed().toList(), shards, shard -> {
+            GitHistoryRefactoringMiner gitHistoryRefactoringMiner = new GitHistoryRefactoringMinerImpl();
+            try (Repository repository = new GitServiceImpl().openRepository(repositoryPath)) {
+                for (int commit = nextCommit.getAndIncrement(); commit < commitIds.size(); commit = nextCommit.getAndIncrement()) {
+                    int commitIndex = commit;
+                    gitHistoryRefactoringMiner.detectAtCommit(repository, commitIds.get(commit), new RefactoringHandler() {
+                        @Override
+                        public void handle(String commitId, List<org.refactoringminer.api.Refactoring> refactorings) {
+                            refactoringsPerCommit.set(commitIndex, convertRefactorings(commitId, refactorings, refactoringTypes));
+                        }
+                    });
+                }
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Something went wrong with the repository '%s'".formatted(gitRepository.getId()), e);
+            }
+        });
+
+        List<Refactoring> detectedRefactorings = new ArrayList<>();
+        for (int commit = 0; commit < refactoringsPerCommit.length(); commit++) {
+            List<Refactoring> refactorings = refactoringsPerCommit.get(commit);
+            if (refactorings != null) {
+                detectedRefactorings.addAll(refactorings);
+            }
+        }
+        return detectedRefactorings;
+    }
+
+    /**
+     * The same commits as {@link GitHistoryRefactoringMiner#detectBetweenCommits}: the commits reachable from the end
+     * commit but not from the start commit, without merge commits, from the oldest to the newest
+     */
+    static List<String> commitsBetween(Repository repository, String startCommitId, String endCommitId) throws IOException, GitAPIException {
+        List<String> commitIds = new ArrayList<>();
+        try (Git git = new Git(repository)) {
+            for (RevCommit commit : git.log().addRange(repository.resolve(startCommitId), repository.resolve(endCommitId)).call()) {
+                if (commit.getParentCount() == 1) {
+                    commitIds.add(commit.getName());
+                }
+            }
+        }
+        Collections.reverse(commitIds);
+        return commitIds;
+    }
+
+    private List<Refactoring> convertRefactorings(String commitId, List<org.refactoringminer.api.Refactoring> refactorings, Set<RefactoringType> refactoringTypes) {
+        return refactorings
+                .stream()
+                .filter(r -> refactoringTypes.contains(convertRefactoringType(r.getRefactoringType())))
+                .map(r -> new Refactoring(commitId, getElementName(r), convertRefactoringType(r.getRefactoringType()), getPackagePath(r), getPosition(r), getFilePath(r)))
+                .toList();
+    }
+
     private String getFilePath(org.refactoringminer.api.Refactoring refactoring) {
         if (refactoring instanceof ChangeReturnTypeRefactoring crtr) {
             return crtr.getOperationBefore().getLocationInfo().getFilePath();
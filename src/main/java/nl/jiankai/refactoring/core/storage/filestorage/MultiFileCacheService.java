@@ -1,5 +1,6 @@
 package nl.jiankai.refactoring.core.storage.filestorage;
 
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
 import nl.jiankai.refactoring.core.storage.api.CacheService;
 import nl.jiankai.refactoring.core.storage.api.Identifiable;
 import nl.jiankai.refactoring.serialisation.SerializationService;
@@ -10,65 +11,116 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+/**
+ * Stores every entity in its own file. The most recently used entities are kept in memory as well, up to
+ * {@link ApplicationConfiguration#cacheMemorySize()} entities unless another maximum is given.
+ */
 public class MultiFileCacheService<T extends Identifiable> implements CacheService<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(MultiFileCacheService.class);
     private final String baseLocation;
     private SerializationService serializationService;
-    private Map<String, T> cache = new HashMap<>();
+    private final Map<String, T> cache;
+    private final int maximumEntriesInMemory;
     private Class<T> entityClassType;
 
     public MultiFileCacheService(String baseLocation, SerializationService serializationService, Class<T> entityClassType) {
+        this(baseLocation, serializationService, entityClassType, ApplicationConfiguration.cacheMemorySize());
+    }
+
+    /**
+     * @param maximumEntriesInMemory the maximum number of entities kept in memory, 0 to always read them from disk
+     */
+    public MultiFileCacheService(String baseLocation, SerializationService serializationService, Class<T> entityClassType, int maximumEntriesInMemory) {
         this.baseLocation = baseLocation;
         this.serializationService = serializationService;
         this.entityClassType = entityClassType;
+        this.maximumEntriesInMemory = maximumEntriesInMemory;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > maximumEntriesInMemory;
+            }
+        };
     }
 
     @Override
     public boolean isCached(String identifier) {
-        return cache.containsKey(identifier) || new LocalFileStorageService(createFileLocation(identifier), false).exists();
+        synchronized (cache) {
+            if (cache.containsKey(identifier)) {
+                return true;
+            }
+        }
+        return new LocalFileStorageService(createFileLocation(identifier), false).exists();
     }
 
     @Override
     public Optional<T> get(String identifier) {
-        if (cache.containsKey(identifier)) {
-            LOGGER.info("'{}' is cached. Trying to fetch from cache..", identifier);
-            return Optional.of(cache.get(identifier));
-        } else {
-            LOGGER.info("'{}' is not cached in memory.. Trying to fetch from disk..", identifier);
-            LocalFileStorageService fileStorageService = new LocalFileStorageService(createFileLocation(identifier), false);
-            if (fileStorageService.exists()) {
-                LOGGER.info("'{}' found on the disk cache!", identifier);
-                return Optional.of(
-                        serializationService.deserialize(
-                                fileStorageService.read().collect(Collectors.joining()).getBytes(),
-                                entityClassType
-                        )
-                );
-            }
+        T cached;
+        synchronized (cache) {
+            cached = cache.get(identifier);
+        }
+        if (cached != null) {
+            LOGGER.debug("'{}' found in the memory cache", identifier);
+            return Optional.of(cached);
+        }
+
+        LocalFileStorageService fileStorageService = new LocalFileStorageService(createFileLocation(identifier), false);
+        if (fileStorageService.exists()) {
+            LOGGER.debug("'{}' found in the disk cache", identifier);
+            return Optional.of(
+                    serializationService.deserialize(
+                            fileStorageService.read().collect(Collectors.joining()).getBytes(),
+                            entityClassType
+                    )
+            );
         }
 
-        LOGGER.info("'{}' could not be found in the memory or disk cache..", identifier);
+        LOGGER.debug("'{}' could not be found in the memory or disk cache", identifier);
         return Optional.empty();
     }
 
+    /**
+     * Writes the entity to a temporary file first, so concurrent readers never see a partially written entity
+     */
     @Override
     public void write(T entity) {
-        LocalFileStorageService fileStorageService = new LocalFileStorageService(createFileLocation(entity.getId()), true);
-        cache.put(entity.getId(), entity);
-        fileStorageService.write(new String(serializationService.serialize(entity)));
-        LOGGER.debug("Written entity '{}' to the cache", entity.getId());
+        if (maximumEntriesInMemory > 0) {
+            synchronized (cache) {
+                cache.put(entity.getId(), entity);
+            }
+        }
+        Path file = Path.of(createFileLocation(entity.getId()));
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temporaryFile, serializationService.serialize(entity));
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temporaryFile);
+                throw e;
+            }
+            LOGGER.debug("Written entity '{}' to the cache", entity.getId());
+        } catch (IOException e) {
+            LOGGER.warn("Could not write entity '{}' to the cache", entity.getId(), e);
+        }
     }
 
     @Override
     public void clear() {
         try {
-            cache.clear();
+            synchronized (cache) {
+                cache.clear();
+            }
             FileUtils.deleteDirectory(new File(baseLocation));
             LOGGER.info("Cache at location '{}' has been cleared", baseLocation);
         } catch (IOException e) {
@@ -0,0 +1,204 @@
+package nl.jiankai.refactoring.daemon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
+import nl.jiankai.refactoring.core.project.Project;
+import nl.jiankai.refactoring.core.project.ProjectManager;
+import nl.jiankai.refactoring.core.project.query.MethodUsages;
+import nl.jiankai.refactoring.core.project.query.ProjectQuery;
+import nl.jiankai.refactoring.core.refactoring.CachedRefactoringImpactAssessor;
+import nl.jiankai.refactoring.core.refactoring.ImpactAssessment;
+import nl.jiankai.refactoring.core.refactoring.RefactoringData;
+import nl.jiankai.refactoring.core.refactoring.RefactoringImpactAssessor;
+import nl.jiankai.refactoring.core.refactoring.javaparser.JavaParserRefactoringImpactAssessor;
+import nl.jiankai.refactoring.serialisation.JacksonSerializationService;
+import nl.jiankai.refactoring.serialisation.SerializationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Keeps the analysis warm in a single long-running process and answers queries over HTTP on the loopback interface.
+ * The {@link ProjectManager} keeps discovering projects, and the process wide type solvers, source root indexes,
+ * library snapshots, call site segments and in-memory caches survive between queries, so only the first query of a
+ * project pays for setting them up.
+ * <p>
+ * Endpoints:
+ * <ul>
+ *     <li>{@code GET /projects}: the ids of the discovered projects</li>
+ *     <li>{@code POST /impact}: the impact of a JSON array of {@link RefactoringData} on the projects to scan, as a list
+ *     of every refactoring with its assessment</li>
+ *     <li>{@code POST /usages}: the most used methods of the {@code provider} project by the {@code users} projects,
+ *     or by all other discovered projects when no users are given</li>
+ * </ul>
+ * Listening on the loopback interface alone does not keep web pages out, so requests are only answered when their
+ * {@code Host} is a loopback name, they have no {@code Origin} and, for {@code POST}, their body is JSON. This rules out
+ * DNS rebinding and the cross-origin requests a browser sends without a preflight.
+ */
+public final class AnalysisDaemon {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnalysisDaemon.class);
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("localhost", "127.0.0.1", "[::1]");
+    private final ProjectManager projectManager;
+    private final RefactoringImpactAssessor refactoringImpactAssessor;
+    private final ProjectQuery projectQuery;
+    private final SerializationService serializationService = new JacksonSerializationService();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public AnalysisDaemon(ProjectQuery projectQuery) {
+        this.projectManager = new ProjectManager();
+        CachedRefactoringImpactAssessor cachedRefactoringImpactAssessor = new CachedRefactoringImpactAssessor(new JavaParserRefactoringImpactAssessor());
+        this.projectManager.addListener(cachedRefactoringImpactAssessor);
+        this.refactoringImpactAssessor = cachedRefactoringImpactAssessor;
+        this.projectQuery = projectQuery;
+    }
+
+    /**
+     * Starts answering queries on {@link ApplicationConfiguration#daemonPort()}, the daemon keeps running until it is
+     * stopped or the process exits
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The analysis daemon has already been started");
+        }
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), ApplicationConfiguration.daemonPort()), 0);
+        executor = Executors.newFixedThreadPool(ApplicationConfiguration.daemonThreads());
+        server.setExecutor(executor);
+        server.createContext("/projects", exchange -> handle(exchange, "GET", body -> projectManager.projects().keySet().stream().sorted().toList()));
+        server.createContext("/impact", exchange -> handle(exchange, "POST", this::assesImpact));
+        server.createContext("/usages", exchange -> handle(exchange, "POST", this::mostUsedMethods));
+        server.start();
+        LOGGER.info("Analysis daemon is listening on {}", server.getAddress());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            LOGGER.info("Analysis daemon has been stopped");
+        }
+    }
+
+    /**
+     * Several refactorings of the same method can be assessed at once, so the assessments are not keyed by signature
+     */
+    private List<RefactoringAssessment> assesImpact(byte[] body) {
+        List<RefactoringData> refactorings = List.of(read(body, RefactoringData[].class));
+        List<RefactoringAssessment> impactAssessments = new ArrayList<>();
+        refactoringImpactAssessor
+                .assesImpact(refactorings)
+                .forEach((refactoringData, impactAssessment) -> impactAssessments.add(new RefactoringAssessment(refactoringData, impactAssessment)));
+        return impactAssessments;
+    }
+
+    private List<MethodUsages> mostUsedMethods(byte[] body) {
+        UsageQuery query = read(body, UsageQuery.class);
+        Map<String, Project> projects = projectManager.projects();
+        Project provider = project(projects, query.provider());
+        List<Project> users = query.users() == null || query.users().isEmpty()
+                ? projects.values().stream().filter(project -> !project.equals(provider)).toList()
+                : query.users().stream().map(user -> project(projects, user)).toList();
+        return projectQuery.mostUsedMethods(provider, users);
+    }
+
+    private <T> T read(byte[] body, Class<T> type) {
+        try {
+            return serializationService.deserialize(body, type);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("The request body is not a valid %s".formatted(type.getSimpleName()), e);
+        }
+    }
+
+    private static Project project(Map<String, Project> projects, String projectId) {
+        Project project = projects.get(projectId);
+        if (project == null) {
+            throw new NoSuchElementException("Project '%s' has not been discovered".formatted(projectId));
+        }
+        return project;
+    }
+
+    private void handle(HttpExchange exchange, String method, Query query) throws IOException {
+        long start = System.currentTimeMillis();
+        try (exchange) {
+            if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host")) || exchange.getRequestHeaders().containsKey("Origin")) {
+                respond(exchange, 403, Map.of("error", "Only local requests that do not come from a web page are answered"));
+                return;
+            }
+            if (!method.equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, Map.of("error", "Only %s is supported".formatted(method)));
+                return;
+            }
+            if (method.equals("POST") && !isJson(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                respond(exchange, 415, Map.of("error", "The request body must be application/json"));
+                return;
+            }
+
+            byte[] body;
+            try (InputStream requestBody = exchange.getRequestBody()) {
+                body = requestBody.readAllBytes();
+            }
+            try {
+                respond(exchange, 200, query.answer(body));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, Map.of("error", e.getMessage()));
+            } catch (NoSuchElementException e) {
+                respond(exchange, 404, Map.of("error", e.getMessage()));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not answer query {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+                respond(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+            }
+        } finally {
+            LOGGER.info("Answered {} {} in {} ms", exchange.getRequestMethod(), exchange.getRequestURI(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * @param host the host header of a request, with or without port
+     */
+    private static boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+
+        int portStart = host.lastIndexOf(':');
+        String hostName = portStart >= 0 && portStart > host.lastIndexOf(']') ? host.substring(0, portStart) : host;
+        return LOOPBACK_HOSTS.contains(hostName.toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && contentType.split(";", 2)[0].trim().equalsIgnoreCase("application/json");
+    }
+
+    private void respond(HttpExchange exchange, int status, Object response) throws IOException {
+        byte[] content = serializationService.serialize(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=" + UTF_8.name());
+        exchange.sendResponseHeaders(status, content.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(content);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Query {
+        Object answer(byte[] body);
+    }
+
+    private record UsageQuery(String provider, List<String> users) {
+    }
+
+    private record RefactoringAssessment(RefactoringData refactoring, ImpactAssessment assessment) {
+    }
+}
@@ -0,0 +1,53 @@
+package nl.jiankai.refactoring.util;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+public class ConcurrencyUtil {
+
+    /**
+     * Applies the action to the items one after another, or with at most the given number of items in flight at the
+     * same time. Returns once the action has been applied to all items.
+     *
+     * @param items   the items to apply the action to
+     * @param threads the maximum number of items processed at the same time, 1 or less processes them one by one
+     * @param action  the action to apply to every item
+     * @throws IllegalStateException when the action threw a checked exception or the calling thread was interrupted
+     */
+    public static <T> void forEach(Collection<T> items, int threads, Consumer<T> action) {
+        int itemsInFlight = Math.min(threads, items.size());
+        if (itemsInFlight <= 1) {
+            items.forEach(action);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(itemsInFlight);
+        try {
+            List<Callable<Void>> tasks = items
+                    .stream()
+                    .<Callable<Void>>map(item -> () -> {
+                        action.accept(item);
+                        return null;
+                    })
+                    .toList();
+            for (Future<Void> task : executor.invokeAll(tasks)) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing the items", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
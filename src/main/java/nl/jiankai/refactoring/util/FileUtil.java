@@ -34,6 +34,19 @@ public class FileUtil {
                 .toList();
     }
 
+    /**
+     * @return the local maven repository, which can be overridden with the same property as maven itself uses
+     */
+    public static File mavenLocalRepository() {
+        String location = System.getProperty("maven.repo.local");
+
+        if (location == null) {
+            location = System.getenv("HOME") + "/.m2/repository";
+        }
+
+        return new File(location);
+    }
+
     public static class FileNotFoundException extends RuntimeException {
         public FileNotFoundException(String errorMessage) {
             super(errorMessage);
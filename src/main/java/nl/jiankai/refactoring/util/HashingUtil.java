@@ -1,5 +1,8 @@
 package nl.jiankai.refactoring.util;
 
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -14,4 +17,17 @@ public class HashingUtil {
         }
         return sb.toString();
     }
+
+    /**
+     * Computes the id git would give the content when it is stored as a blob, so files can be identified by their
+     * content regardless of the commit they were checked out at
+     *
+     * @param content the content of a file
+     * @return the git blob id of the content
+     */
+    public static String gitBlobId(byte[] content) {
+        try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+            return formatter.idFor(Constants.OBJ_BLOB, content).name();
+        }
+    }
 }
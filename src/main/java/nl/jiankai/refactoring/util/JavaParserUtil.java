@@ -3,64 +3,94 @@ package nl.jiankai.refactoring.util;
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseResult;
 import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Processor;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.BodyDeclaration;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.nodeTypes.modifiers.NodeWithPublicModifier;
-import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.JarTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
-import com.github.javaparser.utils.ParserCollectionStrategy;
-import com.github.javaparser.utils.ProjectRoot;
+import com.github.javaparser.resolution.TypeSolver;
+import nl.jiankai.refactoring.configuration.ApplicationConfiguration;
 import nl.jiankai.refactoring.core.project.CompositeProjectFactory;
 import nl.jiankai.refactoring.core.project.Project;
+import nl.jiankai.refactoring.core.project.resolution.MethodResolutionMemo;
+import nl.jiankai.refactoring.core.project.resolution.ResolutionBudget;
+import nl.jiankai.refactoring.core.project.resolution.ResolutionBudgetExceededException;
+import nl.jiankai.refactoring.core.project.resolution.ResolutionQuarantine;
+import nl.jiankai.refactoring.core.project.source.ProjectSources;
+import nl.jiankai.refactoring.core.project.source.SourceRootIndex;
+import nl.jiankai.refactoring.core.project.source.SourceRootIndexCache;
 import nl.jiankai.refactoring.core.refactoring.RefactoringData;
 import nl.jiankai.refactoring.core.refactoring.RefactoringType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toMap;
-
 public class JavaParserUtil {
     private static final Logger LOGGER = LoggerFactory.getLogger(JavaParserUtil.class);
+    private static final AtomicInteger RETAINED_ASTS = new AtomicInteger();
+    private static final AtomicInteger PEAK_RETAINED_ASTS = new AtomicInteger();
+    private static final AtomicInteger CACHED_ASTS = new AtomicInteger();
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static ForkJoinPool parserPool;
+
+    public static List<MethodCallExpr> getMethodUsages(CompilationUnit compilationUnit, String fullyQualifiedSignature, String methodName, MethodResolutionMemo resolutionMemo) {
+        return getMethodUsages(compilationUnit, Map.of(methodName, Set.of(fullyQualifiedSignature)), resolutionMemo).getOrDefault(fullyQualifiedSignature, List.of());
+    }
 
-    public static List<MethodCallExpr> getMethodUsages(CompilationUnit compilationUnit, String fullyQualifiedSignature, String methodName) {
+    /**
+     * Finds the calls to several methods in a single pass over the compilation unit. Only calls with one of the method
+     * names are resolved, each of them once.
+     *
+     * @param compilationUnit                the compilation unit to find the calls in
+     * @param fullyQualifiedSignaturesByName the signatures to find the calls of per simple method name
+     * @param resolutionMemo                 the memo of the project the compilation unit belongs to
+     * @return the calls per signature in the order they occur, signatures without calls are left out
+     */
+    public static Map<String, List<MethodCallExpr>> getMethodUsages(CompilationUnit compilationUnit, Map<String, Set<String>> fullyQualifiedSignaturesByName, MethodResolutionMemo resolutionMemo) {
         AtomicLong failedResolves = new AtomicLong();
         AtomicLong totalResolveAttempts = new AtomicLong();
-        List<MethodCallExpr> methodsUsages = compilationUnit.findAll(MethodCallExpr.class, methodCall -> {
-            try {
-                if (Objects.equals(methodCall.getNameAsString(), methodName)) {
-                    totalResolveAttempts.getAndIncrement();
-                    return Objects.equals(fullyQualifiedSignature, methodCall.resolve().getQualifiedSignature());
+        Map<String, List<MethodCallExpr>> methodUsages = new HashMap<>();
+        compilationUnit.findAll(MethodCallExpr.class).forEach(methodCall -> {
+            Set<String> fullyQualifiedSignatures = fullyQualifiedSignaturesByName.get(methodCall.getNameAsString());
+            if (fullyQualifiedSignatures != null) {
+                totalResolveAttempts.getAndIncrement();
+                Optional<String> signature = resolutionMemo.resolve(methodCall);
+                if (signature.isEmpty()) {
+                    failedResolves.getAndIncrement();
                 }
-                return false;
-            } catch (Exception ex) {
-                failedResolves.getAndIncrement();
-                return false;
+                signature
+                        .filter(fullyQualifiedSignatures::contains)
+                        .ifPresent(resolved -> methodUsages.computeIfAbsent(resolved, key -> new ArrayList<>()).add(methodCall));
             }
         });
 
         if (failedResolves.get() > 0) {
-            LOGGER.warn("{} out of {} methods that matched the pattern {} could not be resolved correctly", failedResolves.get(), totalResolveAttempts, fullyQualifiedSignature);
+            LOGGER.warn("{} out of {} calls to {} methods could not be resolved correctly in '{}'", failedResolves.get(), totalResolveAttempts, fullyQualifiedSignaturesByName.values().stream().mapToInt(Set::size).sum(),
+                    compilationUnit.getStorage().map(CompilationUnit.Storage::getPath).orElse(null));
+            LOGGER.debug("The unresolved calls were made to one of {}", fullyQualifiedSignaturesByName.values().stream().flatMap(Set::stream).sorted().toList());
         }
 
-        return methodsUsages;
+        return methodUsages;
     }
 
     public static Stream<MethodCallExpr> getAllMethodCalls(Project project) {
-        return getProject(project)
-                .stream()
+        return getProjectAsStream(project)
                 .flatMap(compilationUnit -> compilationUnit.findAll(MethodCallExpr.class).stream());
     }
 
@@ -69,8 +99,12 @@ public class JavaParserUtil {
         return getProject(new CompositeProjectFactory().createProject(pathToProject));
     }
 
+    public static ProjectSources getProjectSources(File pathToProject) {
+        return getProjectSources(new CompositeProjectFactory().createProject(pathToProject));
+    }
+
     public static Collection<CompilationUnit> getClasses(Project project, List<String> relativePaths) {
-        return getProjectAsStream(project).filter(compilationUnit -> {
+        List<CompilationUnit> classes = getProjectAsStream(project).filter(compilationUnit -> {
             try {
                 String filePath = compilationUnit.getStorage().orElseThrow().getPath().toString();
 
@@ -79,13 +113,190 @@ public class JavaParserUtil {
                 return false;
             }
         }).toList();
+        recordRetainedAsts(classes.size());
+        return classes;
     }
 
     public static Collection<CompilationUnit> getProject(Project project) {
-        return getProjectAsStream(project).toList();
+        List<CompilationUnit> compilationUnits = getProjectAsStream(project).toList();
+        recordRetainedAsts(compilationUnits.size());
+        return compilationUnits;
     }
 
+    /**
+     * The files are parsed lazily on the thread consuming the stream, because the compilation units are resolved by the
+     * caller and the type solver of a parser may only be used by the thread it belongs to. Use
+     * {@link #extract(ProjectSources, Function)} to parse and resolve files in parallel.
+     * <p>
+     * Every syntax tree counts as retained on its own when the stream reaches it, as the caller may release it before
+     * the next one is parsed. {@link #getProject(Project)} and {@link #getClasses(Project, List)} count all of their
+     * trees at the same time once they have been collected.
+     *
+     * @param project the project to parse
+     * @return the successfully parsed files of the project
+     */
     public static Stream<CompilationUnit> getProjectAsStream(Project project) {
+        ProjectSources projectSources = getProjectSources(project);
+        try {
+            JavaParser javaParser = projectSources.parser();
+            return projectSources
+                    .javaFiles()
+                    .stream()
+                    .map(file -> parse(file, javaParser))
+                    .flatMap(Optional::stream)
+                    .peek(compilationUnit -> recordRetainedAsts(1));
+        } catch (Exception ex) {
+            LOGGER.warn("Parsing project '{}' went wrong. Reason: {}", projectSources.projectPath(), ex.getMessage(), ex);
+        }
+
+        return Stream.empty();
+    }
+
+    /**
+     * Parses the files of a project one by one and only keeps what the extractor returns, so the syntax tree of a
+     * file can be released as soon as the file has been processed. The extractor must therefore not return (parts of)
+     * the syntax tree itself. Files that exceed their resolution budget are quarantined and left out.
+     *
+     * @param projectSources the sources of the project
+     * @param extractor      the function extracting the needed information from a compilation unit
+     * @return the extracted information per successfully parsed file in the order of the files
+     */
+    public static <R> List<R> extract(ProjectSources projectSources, Function<CompilationUnit, R> extractor) {
+        List<R> extracted = mapFiles(projectSources.javaFiles(), file -> {
+            String blobId = null;
+            try {
+                byte[] content = Files.readAllBytes(file);
+                blobId = HashingUtil.gitBlobId(content);
+                if (ResolutionQuarantine.getInstance().skip(file, blobId)) {
+                    return Optional.<R>empty();
+                }
+                return extract(file, content, projectSources.parser(), extractor);
+            } catch (IOException e) {
+                LOGGER.warn("Could not parse file '{}'", file, e);
+                return Optional.<R>empty();
+            } catch (ResolutionBudgetExceededException e) {
+                ResolutionQuarantine.getInstance().quarantine(blobId, e);
+                return Optional.<R>empty();
+            }
+        })
+                .stream()
+                .flatMap(Optional::stream)
+                .toList();
+
+        LOGGER.info("Extracted {} files of project '{}'. Peak of retained syntax trees so far: {}", extracted.size(), projectSources.projectPath(), peakRetainedAsts());
+        return extracted;
+    }
+
+    /**
+     * Parses the content of a single file and applies the extractor to it
+     *
+     * @param file       the location of the file
+     * @param content    the content of the file
+     * @param javaParser the parser to parse the file with
+     * @param extractor  the function extracting the needed information from the compilation unit
+     * @return the extracted information if the file could be parsed
+     * @throws ResolutionBudgetExceededException when the resolution of the file exceeded its budget
+     */
+    public static <R> Optional<R> extract(Path file, byte[] content, JavaParser javaParser, Function<CompilationUnit, R> extractor) {
+        return ResolutionBudget.forFile(file, () -> parse(file, content, javaParser).map(compilationUnit -> {
+            PEAK_RETAINED_ASTS.accumulateAndGet(RETAINED_ASTS.incrementAndGet() + CACHED_ASTS.get(), Math::max);
+            try {
+                return extractor.apply(compilationUnit);
+            } finally {
+                RETAINED_ASTS.decrementAndGet();
+            }
+        }));
+    }
+
+    /**
+     * Besides the syntax trees being extracted, the trees that are handed out to callers and the trees parsed by the
+     * type solvers of source directories count as retained, see {@link #getProjectAsStream(Project)} and
+     * {@link #countCachedAsts(TypeSolver, ParserConfiguration)}.
+     *
+     * @return the highest number of syntax trees that were retained at the same time since the start of the application
+     */
+    public static int peakRetainedAsts() {
+        return PEAK_RETAINED_ASTS.get();
+    }
+
+    /**
+     * Counts the syntax trees parsed by a type solver of source directories as retained for as long as the type solver
+     * is reachable, because its caches may hold on to any of them
+     *
+     * @param typeSolver    the type solver
+     * @param configuration the parser configuration the type solver parses with
+     */
+    public static void countCachedAsts(TypeSolver typeSolver, ParserConfiguration configuration) {
+        AtomicInteger parsed = new AtomicInteger();
+        configuration.getProcessors().add(() -> new Processor() {
+            @Override
+            public void postProcess(ParseResult<? extends Node> result, ParserConfiguration parserConfiguration) {
+                if (result.getResult().isPresent()) {
+                    parsed.incrementAndGet();
+                    PEAK_RETAINED_ASTS.accumulateAndGet(CACHED_ASTS.incrementAndGet() + RETAINED_ASTS.get(), Math::max);
+                }
+            }
+        });
+        CLEANER.register(typeSolver, () -> CACHED_ASTS.addAndGet(-parsed.get()));
+    }
+
+    private static void recordRetainedAsts(int handedOut) {
+        PEAK_RETAINED_ASTS.accumulateAndGet(RETAINED_ASTS.get() + CACHED_ASTS.get() + handedOut, Math::max);
+    }
+
+    /**
+     * Applies the function to all files, in parallel when multiple parser threads have been configured. Parsing with
+     * the sources of a project should go through {@link ProjectSources#parser()} so that every worker thread uses its
+     * own parser.
+     *
+     * @param files    the files to apply the function to
+     * @param function the function to apply to every file
+     * @return the results in the same order as the files
+     */
+    public static <R> List<R> mapFiles(List<Path> files, Function<Path, R> function) {
+        if (ApplicationConfiguration.parserThreads() <= 1 || files.size() <= 1) {
+            return files.stream().map(function).toList();
+        }
+
+        try {
+            return getParserPool().submit(() -> files.parallelStream().map(function).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static synchronized ForkJoinPool getParserPool() {
+        if (parserPool == null) {
+            parserPool = new ForkJoinPool(ApplicationConfiguration.parserThreads());
+        }
+        return parserPool;
+    }
+
+    /**
+     * Collects the java source files and dependencies of a project without parsing anything yet
+     *
+     * @param project the project to collect the sources of
+     * @return the sources of the project
+     */
+    public static ProjectSources getProjectSources(Project project) {
+        return getProjectSources(project, List.of());
+    }
+
+    /**
+     * Collects the java source files and dependencies of a dependent without parsing anything yet
+     *
+     * @param project          the dependent to collect the sources of
+     * @param librarySnapshots the snapshots of the libraries the dependent is analysed for, or no snapshots to resolve
+     *                         the libraries against the dependencies of the dependent
+     * @return the sources of the dependent
+     */
+    public static ProjectSources getProjectSources(Project project, List<File> librarySnapshots) {
         Collection<File> jarLocations = new ArrayList<>();
         try {
             project.install();
@@ -94,56 +305,53 @@ public class JavaParserUtil {
             LOGGER.warn("Could not properly install project '{}' dependencies. Parsing the project may cause problems...", project.getId());
         }
         File projectPath = project.getLocalPath();
-        List<File> allSourceDirectories = collectAllSourceDirectories(projectPath);
-        try {
-            CombinedTypeSolver typeSolver = new CombinedTypeSolver(new ReflectionTypeSolver());
+        SourceRootIndex sourceRootIndex = SourceRootIndexCache.getInstance().get(projectPath);
 
-            for (File sourceDir : allSourceDirectories) {
-                typeSolver.add(new JavaParserTypeSolver(sourceDir));
-            }
-
-            for (File jar : jarLocations) {
-                typeSolver.add(new JarTypeSolver(jar.getAbsolutePath()));
-            }
+        return new ProjectSources(projectPath, sourceRootIndex.typeSolverRoots(), sourceRootIndex.javaFiles(), jarLocations, librarySnapshots);
+    }
 
-            ProjectRoot projectRoot = new ParserCollectionStrategy(new ParserConfiguration().setSymbolResolver(new JavaSymbolSolver(typeSolver))).collect(projectPath.toPath());
+    public static Optional<CompilationUnit> parse(Path file, JavaParser javaParser) {
+        try {
+            return parse(file, Files.readAllBytes(file), javaParser);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read file '{}'", file, e);
+            return Optional.empty();
+        }
+    }
 
-            return projectRoot
-                    .getSourceRoots()
-                    .stream()
-                    .flatMap(
-                            sourceRoot -> {
-                                try {
-                                    return sourceRoot.tryToParse().stream();
-                                } catch (IOException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            })
-                    .filter(ParseResult::isSuccessful)
-                    .map(parseResult -> parseResult.getResult().orElse(null))
-                    .filter(Objects::nonNull);
-        } catch (Exception ex) {
-            LOGGER.warn("Parsing project '{}' went wrong. Reason: {}", projectPath, ex.getMessage(), ex);
+    /**
+     * Parses the already read content of a file
+     *
+     * @param file       the location of the file, used as the storage of the compilation unit
+     * @param content    the content of the file
+     * @param javaParser the parser to parse the file with, which may only be used by a single thread at a time
+     * @return the compilation unit if the file could be parsed successfully
+     */
+    public static Optional<CompilationUnit> parse(Path file, byte[] content, JavaParser javaParser) {
+        ParserConfiguration parserConfiguration = javaParser.getParserConfiguration();
+        ParseResult<CompilationUnit> parseResult = javaParser.parse(new ByteArrayInputStream(content), parserConfiguration.getCharacterEncoding());
+        if (parseResult.isSuccessful()) {
+            return parseResult.getResult().map(compilationUnit -> compilationUnit.setStorage(file, parserConfiguration.getCharacterEncoding()));
         }
 
-        return Stream.empty();
+        LOGGER.debug("Could not parse file '{}': {}", file, parseResult.getProblems());
+        return Optional.empty();
     }
 
     public static Stream<MethodDeclaration> getAllPublicMethods(Project project) {
-        return getProject(project)
-                .stream()
-                .map(compilationUnit -> {
-                    String classOrInterfaceName = compilationUnit.getPrimaryTypeName().orElse("");
-                    ClassOrInterfaceDeclaration classOrInterfaceDeclaration = compilationUnit.getClassByName(classOrInterfaceName).orElseGet(() -> compilationUnit.getInterfaceByName(classOrInterfaceName).orElse(null));
-                    if (classOrInterfaceDeclaration != null) {
-                        return classOrInterfaceDeclaration;
-                    } else {
-                        LOGGER.debug("Could not get public methods of class '{}'", classOrInterfaceName);
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .flatMap(JavaParserUtil::getPublicMethodsFromClassOrInterface);
+        return getProjectAsStream(project)
+                .flatMap(JavaParserUtil::getPublicMethods);
+    }
+
+    public static Stream<MethodDeclaration> getPublicMethods(CompilationUnit compilationUnit) {
+        String classOrInterfaceName = compilationUnit.getPrimaryTypeName().orElse("");
+        ClassOrInterfaceDeclaration classOrInterfaceDeclaration = compilationUnit.getClassByName(classOrInterfaceName).orElseGet(() -> compilationUnit.getInterfaceByName(classOrInterfaceName).orElse(null));
+        if (classOrInterfaceDeclaration != null) {
+            return getPublicMethodsFromClassOrInterface(classOrInterfaceDeclaration);
+        } else {
+            LOGGER.debug("Could not get public methods of class '{}'", classOrInterfaceName);
+            return Stream.empty();
+        }
     }
 
     private static Stream<MethodDeclaration> getPublicMethodsFromClassOrInterface(ClassOrInterfaceDeclaration classOrInterface) {
@@ -163,22 +371,6 @@ public class JavaParserUtil {
         return Stream.empty();
     }
 
-    private static List<File> collectAllSourceDirectories(File root) {
-        List<File> sourceDirs = new ArrayList<>();
-
-        File[] files = root.listFiles();
-        if (files != null) {
-            for (File child : files) {
-                if (child.isDirectory() && child.getPath().endsWith("/src/main/java")) {
-                    sourceDirs.add(child);
-                }
-                sourceDirs.addAll(collectAllSourceDirectories(child));
-            }
-
-        }
-        return sourceDirs;
-    }
-
     public static boolean isBreakingChange(MethodCallExpr methodCallExpr, RefactoringData refactoringData) {
         RefactoringType refactoringType = refactoringData.refactoringType();
 
@@ -0,0 +1,107 @@
+package nl.jiankai.refactoring.core.project.query;
+
+import nl.jiankai.refactoring.core.project.Project;
+import nl.jiankai.refactoring.core.project.ProjectType;
+import nl.jiankai.refactoring.core.project.dependencymanagement.ProjectCoordinate;
+import nl.jiankai.refactoring.core.project.dependencymanagement.ProjectData;
+import nl.jiankai.refactoring.core.refactoring.javaparser.Dependency;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependentIdTest {
+    private static final ProjectCoordinate COORDINATE = new ProjectCoordinate("com.example", "dependent", "1.0-SNAPSHOT");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sharesTheIdOfClonesAtTheSameCommit() throws Exception {
+        Path first = directory.resolve("first");
+        try (Git git = Git.init().setDirectory(first.toFile()).call()) {
+            commit(git, first, "class Dependent {}");
+        }
+        Path second = directory.resolve("second");
+        Git.cloneRepository().setURI(first.toUri().toString()).setDirectory(second.toFile()).call().close();
+
+        assertEquals(JavaParserProjectQuery.dependentId(new StubProject(first)), JavaParserProjectQuery.dependentId(new StubProject(second)));
+    }
+
+    @Test
+    void distinguishesCommitsOfTheSameVersion() throws Exception {
+        Path repository = directory.resolve("dependent");
+        try (Git git = Git.init().setDirectory(repository.toFile()).call()) {
+            commit(git, repository, "class Dependent {}");
+            String before = JavaParserProjectQuery.dependentId(new StubProject(repository));
+
+            commit(git, repository, "class Dependent { void use() {} }");
+            String after = JavaParserProjectQuery.dependentId(new StubProject(repository));
+
+            assertNotEquals(before, after);
+            assertTrue(before.startsWith(COORDINATE + "@"));
+            assertTrue(after.startsWith(COORDINATE + "@"));
+        }
+    }
+
+    @Test
+    void fallsBackToThePathWithoutRepository() throws Exception {
+        Path project = Files.createDirectories(directory.resolve("plain"));
+
+        assertEquals(project.toAbsolutePath().normalize().toString(), JavaParserProjectQuery.dependentId(new StubProject(project)));
+    }
+
+    private static void commit(Git git, Path repository, String source) throws Exception {
+        Files.writeString(repository.resolve("Dependent.java"), source);
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("Change dependent").setSign(false).call();
+    }
+
+    private record StubProject(Path path) implements Project {
+        @Override
+        public File getLocalPath() {
+            return path.toFile();
+        }
+
+        @Override
+        public Collection<Dependency> resolve() {
+            return List.of();
+        }
+
+        @Override
+        public Collection<File> jars() {
+            return List.of();
+        }
+
+        @Override
+        public void install() {
+        }
+
+        @Override
+        public ProjectData getProjectVersion() {
+            return new ProjectData(COORDINATE, path.toFile());
+        }
+
+        @Override
+        public boolean hasDependency(Dependency dependency) {
+            return false;
+        }
+
+        @Override
+        public ProjectType getProjectType() {
+            return ProjectType.MAVEN;
+        }
+
+        @Override
+        public String getId() {
+            return path.toString();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package nl.jiankai.refactoring.core.project.query;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsageMatrixTest {
+    private static final List<String> SIGNATURES = List.of("com.example.Library.first()", "com.example.Library.second(int)", "com.example.Library.third(java.lang.String)");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsTheRowsThatWereWritten() {
+        SignatureTable signatureTable = SignatureTable.of(SIGNATURES);
+        long[] first = counters(signatureTable, "com.example.Library.first()", 3, "com.example.Library.third(java.lang.String)", 1);
+        long[] second = counters(signatureTable, "com.example.Library.second(int)", 7);
+        UsageMatrix usageMatrix = new UsageMatrix(signatureTable);
+        usageMatrix.put("com.example:first:1.0@tree", first);
+        usageMatrix.put("com.example:second:1.0@tree", second);
+        usageMatrix.put("com.example:unused:1.0@tree", signatureTable.newCounters());
+        Path file = directory.resolve("library.matrix");
+
+        usageMatrix.write(file);
+        Optional<UsageMatrix> read = UsageMatrix.read(file, SignatureTable.of(SIGNATURES));
+
+        assertTrue(read.isPresent());
+        assertArrayEquals(first, read.get().row("com.example:first:1.0@tree").orElseThrow());
+        assertArrayEquals(second, read.get().row("com.example:second:1.0@tree").orElseThrow());
+        assertArrayEquals(signatureTable.newCounters(), read.get().row("com.example:unused:1.0@tree").orElseThrow());
+        assertTrue(read.get().row("com.example:other:1.0@tree").isEmpty());
+    }
+
+    @Test
+    void ignoresMatricesOfOtherPublicMethods() {
+        SignatureTable signatureTable = SignatureTable.of(SIGNATURES);
+        UsageMatrix usageMatrix = new UsageMatrix(signatureTable);
+        usageMatrix.put("com.example:first:1.0@tree", counters(signatureTable, "com.example.Library.first()", 1));
+        Path file = directory.resolve("library.matrix");
+
+        usageMatrix.write(file);
+
+        assertTrue(UsageMatrix.read(file, SignatureTable.of(List.of("com.example.Library.first()"))).isEmpty());
+    }
+
+    @Test
+    void ignoresMissingMatrices() {
+        assertTrue(UsageMatrix.read(directory.resolve("missing.matrix"), SignatureTable.of(SIGNATURES)).isEmpty());
+    }
+
+    private static long[] counters(SignatureTable signatureTable, Object... countsBySignature) {
+        long[] counters = signatureTable.newCounters();
+        for (int i = 0; i < countsBySignature.length; i += 2) {
+            counters[signatureTable.id((String) countsBySignature[i])] = (Integer) countsBySignature[i + 1];
+        }
+        return counters;
+    }
+}
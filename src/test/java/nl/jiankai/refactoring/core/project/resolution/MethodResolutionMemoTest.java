@@ -0,0 +1,83 @@
+package nl.jiankai.refactoring.core.project.resolution;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MethodResolutionMemoTest {
+    private final JavaParser parser = new JavaParser(new ParserConfiguration().setSymbolResolver(new JavaSymbolSolver(new ReflectionTypeSolver())));
+
+    @Test
+    void doesNotShareResolutionsOfTypeVariableScopesBetweenTypes() {
+        List<MethodCallExpr> calls = calls("""
+                class First<T extends java.io.Closeable> {
+                    void first(T closeable) throws Exception {
+                        closeable.close();
+                    }
+                }
+                class Second<T extends AutoCloseable> {
+                    void second(T closeable) throws Exception {
+                        closeable.close();
+                    }
+                }
+                """);
+        MethodResolutionMemo memo = new MethodResolutionMemo(100);
+
+        assertEquals(Optional.of("java.io.Closeable.close()"), memo.resolve(calls.get(0)));
+        assertEquals(Optional.of("java.lang.AutoCloseable.close()"), memo.resolve(calls.get(1)));
+        assertEquals(2, memo.statistics().bypasses());
+        assertEquals(0, memo.statistics().size());
+    }
+
+    @Test
+    void doesNotShareResolutionsOfTypeVariableArguments() {
+        List<MethodCallExpr> calls = calls("""
+                class First<T extends CharSequence> {
+                    void first(StringBuilder builder, T value) {
+                        builder.append(value);
+                    }
+                }
+                class Second<T extends Number> {
+                    void second(StringBuilder builder, java.util.List<T> values) {
+                        builder.append(values);
+                    }
+                }
+                """);
+        MethodResolutionMemo memo = new MethodResolutionMemo(100);
+
+        assertEquals(Optional.of("java.lang.StringBuilder.append(java.lang.CharSequence)"), memo.resolve(calls.get(0)));
+        assertEquals(Optional.of("java.lang.StringBuilder.append(java.lang.Object)"), memo.resolve(calls.get(1)));
+        assertEquals(2, memo.statistics().bypasses());
+    }
+
+    @Test
+    void sharesResolutionsOfConcreteTypes() {
+        List<MethodCallExpr> calls = calls("""
+                class First {
+                    void first(StringBuilder builder) {
+                        builder.append("first");
+                        builder.append("second");
+                    }
+                }
+                """);
+        MethodResolutionMemo memo = new MethodResolutionMemo(100);
+
+        assertEquals(Optional.of("java.lang.StringBuilder.append(java.lang.String)"), memo.resolve(calls.get(0)));
+        assertEquals(Optional.of("java.lang.StringBuilder.append(java.lang.String)"), memo.resolve(calls.get(1)));
+        assertEquals(1, memo.statistics().hits());
+    }
+
+    private List<MethodCallExpr> calls(String source) {
+        CompilationUnit compilationUnit = parser.parse(source).getResult().orElseThrow();
+        return compilationUnit.findAll(MethodCallExpr.class);
+    }
+}
@@ -0,0 +1,50 @@
+package nl.jiankai.refactoring.core.project.resolution;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OverloadTableTest {
+    private final OverloadTable overloads = OverloadTable.of(List.of(
+            "com.example.Base.log(java.lang.String)",
+            "com.example.Printer.print(java.lang.String)",
+            "com.example.Printer.print(java.lang.String, int)",
+            "com.example.Printer.toString()",
+            "com.example.LogWriter.write(java.lang.String)",
+            "com.example.Child.log(java.lang.String)"));
+
+    @Test
+    void decidesTheOnlyMethodAcceptingTheArguments() {
+        assertEquals(Optional.of("com.example.Printer.print(java.lang.String)"),
+                overloads.unambiguous("com.example.Printer", Set.of("java.lang.Object"), "print", 1));
+    }
+
+    @Test
+    void decidesOverridesOfLibrarySupertypes() {
+        assertEquals(Optional.of("com.example.Child.log(java.lang.String)"),
+                overloads.unambiguous("com.example.Child", Set.of("com.example.Base", "java.lang.Object"), "log", 1));
+    }
+
+    @Test
+    void escalatesWhenASupertypeIsOutsideOfTheLibrary() {
+        // Writer declares write(char[]) and write(int) as well, which the table does not know about
+        assertEquals(Optional.empty(),
+                overloads.unambiguous("com.example.LogWriter", Set.of("java.io.Writer", "java.lang.Object"), "write", 1));
+    }
+
+    @Test
+    void escalatesWhenTheSupertypesAreUnknownToTheLibrary() {
+        assertEquals(Optional.empty(),
+                overloads.unambiguous("com.example.Child", Set.of("com.example.Unknown", "java.lang.Object"), "log", 1));
+    }
+
+    @Test
+    void escalatesMethodsOfObject() {
+        assertEquals(Optional.empty(),
+                overloads.unambiguous("com.example.Printer", Set.of("java.lang.Object"), "toString", 0));
+    }
+}
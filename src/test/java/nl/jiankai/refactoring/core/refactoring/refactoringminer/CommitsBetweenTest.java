@@ -0,0 +1,75 @@
+package nl.jiankai.refactoring.core.refactoring.refactoringminer;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.refactoringminer.api.Refactoring;
+import org.refactoringminer.api.RefactoringHandler;
+import org.refactoringminer.rm1.GitHistoryRefactoringMinerImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommitsBetweenTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void selectsTheCommitsRefactoringMinerDetectsBetween() throws Exception {
+        try (Git git = Git.init().setDirectory(directory.toFile()).setInitialBranch("main").call()) {
+            RevCommit start = commit(git, "Library", "first", "Side", "one");
+            commit(git, "Library", "second", "Side", "one");
+            git.checkout().setCreateBranch(true).setName("side").call();
+            commit(git, "Library", "second", "Side", "two");
+            commit(git, "Library", "second", "Side", "three");
+            git.checkout().setName("main").call();
+            RevCommit beforeMerge = commit(git, "Library", "third", "Side", "one");
+            git.merge().include(git.getRepository().resolve("side")).setFastForward(MergeCommand.FastForwardMode.NO_FF).setCommit(false).call();
+            write(git, "Side", "three");
+            git.commit().setMessage("Merge side").setSign(false).call();
+            RevCommit end = commit(git, "Library", "fourth", "Side", "three");
+
+            Repository repository = git.getRepository();
+            List<String> selected = RefactoringMinerRefactoringDetector.commitsBetween(repository, start.getName(), end.getName());
+
+            List<String> detected = new ArrayList<>();
+            new GitHistoryRefactoringMinerImpl().detectBetweenCommits(repository, start.getName(), end.getName(), new RefactoringHandler() {
+                @Override
+                public void handle(String commitId, List<Refactoring> refactorings) {
+                    detected.add(commitId);
+                }
+            });
+
+            assertEquals(detected, selected);
+            assertEquals(5, selected.size());
+            assertEquals(end.getName(), selected.get(selected.size() - 1));
+            assertTrue(selected.contains(beforeMerge.getName()));
+        }
+    }
+
+    private RevCommit commit(Git git, String library, String libraryMethod, String side, String sideMethod) throws Exception {
+        write(git, library, libraryMethod);
+        write(git, side, sideMethod);
+        return git.commit().setMessage("Rename methods").setSign(false).call();
+    }
+
+    private void write(Git git, String type, String method) throws Exception {
+        Files.writeString(directory.resolve(type + ".java"), """
+                public class %s {
+                    public int %s(int value) {
+                        int doubled = value * 2;
+                        return doubled + 1;
+                    }
+                }
+                """.formatted(type, method));
+        git.add().addFilepattern(type + ".java").call();
+    }
+}